@@ -2,20 +2,28 @@ class Transaction {
     private int id;
     private int userId;
     private LocalDate date;
-    private String type; // Income or Expense
-    private String category;
+    private byte typeCode; // TransactionType code, 0 if unset
+    private short categoryId; // categories.id, see CategoryDictionary
     private String description;
-    private double amount;
+    private long amountMinor; // Minor units (pence)
+    private Currency currency;
+    private String sourceId; // Identity in the imported file, null if entered by hand
     
-    public Transaction(int id, int userId, LocalDate date, String type, 
-                      String category, String description, double amount) {
+    public Transaction(int id, int userId, LocalDate date, TransactionType type, 
+                      int categoryId, String description, long amountMinor) {
+        this(id, userId, date, type, categoryId, description, amountMinor, Money.DEFAULT_CURRENCY);
+    }
+    
+    public Transaction(int id, int userId, LocalDate date, TransactionType type, 
+                      int categoryId, String description, long amountMinor, Currency currency) {
         this.id = id;
         this.userId = userId;
         this.date = date;
-        this.type = type;
-        this.category = category;
+        setType(type);
+        setCategoryId(categoryId);
         this.description = description;
-        this.amount = amount;
+        this.amountMinor = amountMinor;
+        this.currency = currency;
     }
     
     // Getters and setters
@@ -28,17 +36,360 @@ class Transaction {
     public LocalDate getDate() { return date; }
     public void setDate(LocalDate date) { this.date = date; }
     
-    public String getType() { return type; }
-    public void setType(String type) { this.type = type; }
+    public TransactionType getType() {
+        return typeCode == 0 ? null : TransactionType.fromCode(typeCode);
+    }
+    public void setType(TransactionType type) {
+        this.typeCode = type == null ? 0 : (byte) type.getCode();
+    }
     
-    public String getCategory() { return category; }
-    public void setCategory(String category) { this.category = category; }
+    public int getCategoryId() { return categoryId; }
+    public void setCategoryId(int categoryId) {
+        if (categoryId < 0 || categoryId > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Category id out of range: " + categoryId);
+        }
+        this.categoryId = (short) categoryId;
+    }
     
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
     
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public long getAmountMinor() { return amountMinor; }
+    public void setAmountMinor(long amountMinor) { this.amountMinor = amountMinor; }
+    
+    public Currency getCurrency() { return currency; }
+    public void setCurrency(Currency currency) { this.currency = currency; }
+    
+    /**
+     * @return Identity of the row in its source, e.g. an OFX FITID; part of
+     *         the content hash that makes re-imports idempotent
+     */
+    public String getSourceId() { return sourceId; }
+    public void setSourceId(String sourceId) { this.sourceId = sourceId; }
+    
+    /**
+     * @return Amount as a Money value, for display
+     */
+    public Money getAmount() { return new Money(amountMinor, currency); }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// TRANSACTION TYPE AND CATEGORY CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Kind of transaction
+ * 
+ * Stored in the transactions.type_code TINYINT column; the label is what
+ * the UI and exports show.
+ */
+enum TransactionType {
+    INCOME(1, "Income"),
+    EXPENSE(2, "Expense");
+    
+    private static final TransactionType[] BY_CODE = new TransactionType[3];
+    static {
+        for (TransactionType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+    
+    private final int code;
+    private final String label;
+    
+    TransactionType(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+    
+    public int getCode() { return code; }
+    public String getLabel() { return label; }
+    
+    /**
+     * @param code Value of a type_code column
+     * @return Matching type
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static TransactionType fromCode(int code) {
+        if (code <= 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown transaction type code: " + code);
+        }
+        return BY_CODE[code];
+    }
+    
+    /**
+     * @param label Display label, case-insensitive (e.g. "income")
+     * @return Matching type
+     * @throws IllegalArgumentException if the label is unknown
+     */
+    public static TransactionType fromLabel(String label) {
+        for (TransactionType type : values()) {
+            if (type.label.equalsIgnoreCase(label)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transaction type: " + label);
+    }
+    
+    @Override
+    public String toString() {
+        return label;
+    }
+}
+
+/**
+ * In-memory copy of the categories table
+ * 
+ * Transactions carry a small integer category id; names are looked up
+ * here only for display. Lookups are lock-free. Registering a category
+ * copies the id-indexed name array, which is cheap because categories
+ * are few and rarely added.
+ */
+final class CategoryDictionary {
+    /** Id of no category; AUTO_INCREMENT ids start at 1 */
+    static final int NO_ID = 0;
+    
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+    
+    /**
+     * @param name Category name
+     * @return Category id, or NO_ID if the name is not registered
+     */
+    public int idOf(String name) {
+        if (name == null) {
+            return NO_ID;
+        }
+        Integer id = ids.get(name);
+        return id == null ? NO_ID : id;
+    }
+    
+    /**
+     * @param id Category id
+     * @return Category name, or null if the id is not registered
+     */
+    public String nameOf(int id) {
+        String[] current = names;
+        return id > 0 && id < current.length ? current[id] : null;
+    }
+    
+    /**
+     * @return Number of categories registered, not counting aliases
+     */
+    public int size() {
+        int count = 0;
+        for (String name : names) {
+            if (name != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * @return Registered category names in id order
+     */
+    public List<String> names() {
+        List<String> result = new ArrayList<>();
+        for (String name : names) {
+            if (name != null) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Record a category row
+     * 
+     * The first name registered for an id is its display name; later
+     * names become aliases (MySQL compares names case-insensitively, so
+     * "food" resolves to the id of "Food").
+     */
+    synchronized void register(int id, String name) {
+        if (id <= NO_ID) {
+            throw new IllegalArgumentException("Invalid category id: " + id);
+        }
+        String[] current = names;
+        if (id >= current.length || current[id] == null) {
+            String[] grown = Arrays.copyOf(current, Math.max(id + 1, current.length));
+            grown[id] = name;
+            names = grown;
+        }
+        ids.put(name, id);
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// MONEY CLASS
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Fixed-point money value
+ * 
+ * Amounts are held as a long count of minor units (pence for GBP) so sums
+ * are exact and match SQL SUM over DECIMAL(10, 2) columns. The static
+ * helpers work on raw longs, letting hot paths add, parse and format
+ * amounts without allocating Money objects.
+ */
+final class Money implements Comparable<Money> {
+    static final Currency DEFAULT_CURRENCY = Currency.getInstance("GBP");
+    private static final int SCALE = 2;
+    
+    private final long minor;
+    private final Currency currency;
+    
+    public Money(long minor, Currency currency) {
+        this.minor = minor;
+        this.currency = currency;
+    }
+    
+    public long getMinor() { return minor; }
+    public Currency getCurrency() { return currency; }
+    
+    /**
+     * @return Amount with the currency symbol, e.g. £1234.56
+     */
+    public String toDisplayString() {
+        return currency.getSymbol(Locale.UK) + format(minor);
+    }
+    
+    /**
+     * @return Plain decimal amount, e.g. 1234.56
+     */
+    @Override
+    public String toString() {
+        return format(minor);
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minor, other.minor);
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return minor == other.minor && currency.equals(other.currency);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minor) * 31 + currency.hashCode();
+    }
+    
+    /**
+     * Add two minor-unit amounts, failing on overflow instead of wrapping
+     */
+    static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+    
+    /**
+     * Convert a DECIMAL column value to minor units
+     * 
+     * @param amount Value read from the database, may be null (e.g. SUM of no rows)
+     * @return Minor units; 0 for null
+     * @throws ArithmeticException if the value has more than two decimals or overflows
+     */
+    static long fromDecimal(BigDecimal amount) {
+        return amount == null ? 0L : amount.movePointRight(SCALE).longValueExact();
+    }
+    
+    /**
+     * Convert minor units to a DECIMAL value for binding
+     */
+    static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+    
+    /**
+     * Convert minor units to a double, for chart axes only
+     */
+    static double toDouble(long minor) {
+        return minor / 100.0;
+    }
+    
+    /**
+     * Parse a decimal amount such as "12", "12.5" or "-0.99" into minor units
+     * 
+     * @param text Amount text; surrounding whitespace is ignored
+     * @return Minor units
+     * @throws NumberFormatException if the text is not a valid amount with at most two decimals
+     */
+    static long parseMinor(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+        
+        boolean negative = false;
+        if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+            negative = text.charAt(start) == '-';
+            start++;
+        }
+        if (start == end) {
+            throw new NumberFormatException("Empty amount: \"" + text + "\"");
+        }
+        
+        long units = 0;
+        int decimals = -1;
+        boolean digits = false;
+        try {
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '.' && decimals < 0) {
+                    decimals = 0;
+                } else if (c >= '0' && c <= '9') {
+                    if (decimals >= SCALE) {
+                        throw new NumberFormatException("More than two decimals: \"" + text + "\"");
+                    }
+                    units = Math.addExact(Math.multiplyExact(units, 10), c - '0');
+                    digits = true;
+                    if (decimals >= 0) decimals++;
+                } else {
+                    throw new NumberFormatException("Invalid amount: \"" + text + "\"");
+                }
+            }
+            for (int d = Math.max(decimals, 0); d < SCALE; d++) {
+                units = Math.multiplyExact(units, 10);
+            }
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: \"" + text + "\"");
+        }
+        if (!digits) {
+            throw new NumberFormatException("Invalid amount: \"" + text + "\"");
+        }
+        return negative ? -units : units;
+    }
+    
+    /**
+     * Format minor units as a plain decimal, e.g. 123456 as 1234.56
+     */
+    static String format(long minor) {
+        return appendTo(new StringBuilder(24), minor).toString();
+    }
+    
+    /**
+     * Append minor units as a plain decimal without intermediate objects
+     */
+    static StringBuilder appendTo(StringBuilder out, long minor) {
+        if (minor < 0) {
+            out.append('-');
+        }
+        long abs = Math.abs(minor);
+        // Long.MIN_VALUE has no positive counterpart; Math.abs leaves it negative
+        if (abs < 0) {
+            return out.append("92233720368547758.08");
+        }
+        out.append(abs / 100).append('.');
+        long cents = abs % 100;
+        if (cents < 10) {
+            out.append('0');
+        }
+        return out.append(cents);
+    }
 }
 
 // ═══════════════════════════════════════════════════════════════════════════
@@ -55,27 +406,280 @@ class Transaction {
  * - Data export functionality
  */
 class DatabaseManager {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/fiscalforge";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "";
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    // Integer.MIN_VALUE tells Connector/J to stream rows instead of buffering the result
+    private static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+    private static final int TREND_MONTHS = 12;
+    // monthly_rollups is keyed (user_id, type_code, month_key, category_id)
+    private static final String MONTH_INDEX = "PRIMARY";
+    private static final String MONTHLY_EXPENSES_SQL =
+        "SELECT month_key, SUM(total) AS total FROM monthly_rollups " +
+        "WHERE user_id = ? AND type_code = " + TransactionType.EXPENSE.getCode() +
+        " AND month_key BETWEEN ? AND ? " +
+        "GROUP BY month_key ORDER BY month_key";
+    private static final String EXPENSES_BY_CATEGORY_SQL =
+        "SELECT category_id, SUM(total) AS total FROM monthly_rollups " +
+        "WHERE user_id = ? AND type_code = " + TransactionType.EXPENSE.getCode() +
+        " GROUP BY category_id ORDER BY total DESC";
+    // The whole dashboard in one statement. part tells the sections apart:
+    // 1 = totals per type, 2 = expenses per category, 3 = expenses per month
+    // of the trend window, 4 = most recent transactions. The outer ORDER BY
+    // puts categories largest first, months in order and recent rows newest first.
+    private static final String DASHBOARD_SQL =
+        "SELECT 1 AS part, type_code, NULL AS category_id, NULL AS month_key, SUM(total) AS total, " +
+        "NULL AS id, NULL AS user_id, NULL AS date, NULL AS description, NULL AS amount, NULL AS currency " +
+        "FROM monthly_rollups WHERE user_id = ? GROUP BY type_code " +
+        "UNION ALL " +
+        "SELECT 2, type_code, category_id, NULL, SUM(total), NULL, NULL, NULL, NULL, NULL, NULL " +
+        "FROM monthly_rollups WHERE user_id = ? AND type_code = " + TransactionType.EXPENSE.getCode() +
+        " GROUP BY type_code, category_id " +
+        "UNION ALL " +
+        "SELECT 3, type_code, NULL, month_key, SUM(total), NULL, NULL, NULL, NULL, NULL, NULL " +
+        "FROM monthly_rollups WHERE user_id = ? AND type_code = " + TransactionType.EXPENSE.getCode() +
+        " AND month_key BETWEEN ? AND ? GROUP BY type_code, month_key " +
+        "UNION ALL " +
+        "(SELECT 4, type_code, category_id, NULL, NULL, id, user_id, date, description, amount, currency " +
+        "FROM transactions WHERE user_id = ? ORDER BY date DESC, id DESC LIMIT ?) " +
+        "ORDER BY part, month_key, total DESC, date DESC, id DESC";
+    private static final String UPSERT_ROLLUP_SQL =
+        "INSERT INTO monthly_rollups (user_id, type_code, month_key, category_id, total, txn_count) " +
+        "VALUES (?, ?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE total = total + VALUES(total), txn_count = txn_count + VALUES(txn_count)";
+    // A row whose content hash is already stored fails with a duplicate key
+    // error, which is reported as a duplicate rather than a failure. ON
+    // DUPLICATE KEY UPDATE would hide it: with Connector/J's default
+    // CLIENT_FOUND_ROWS an absorbed row reports the same update count as
+    // an inserted one.
+    private static final String INSERT_TRANSACTION_SQL =
+        "INSERT INTO transactions (user_id, date, type_code, category_id, description, amount, currency, " +
+        "content_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String CONTENT_HASH_INDEX = "uq_transactions_user_content_hash";
+    // MySQL ER_DUP_ENTRY
+    private static final int DUPLICATE_ENTRY_ERROR = 1062;
+    private static final int CONTENT_HASH_BYTES = 16;
+    private static final double CONTENT_HASH_FILTER_FPP = 0.01;
+    private static final ThreadLocal<MessageDigest> CONTENT_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+    
+    private static final int CACHED_USERS = 256;
+    static final int MAX_CATEGORIES = 1_000;
+    // Each DateRangeIndex holds several day-granular trees, so fewer are kept
+    private static final int RANGE_INDEXED_USERS = 64;
+    
+    private final ConnectionPool pool;
+    private final AggregateCache aggregateCache = new AggregateCache(CACHED_USERS);
+    private final CategoryDictionary categories = new CategoryDictionary();
+    // Category ids that were unknown when last looked up; see resolveCategoryNames
+    private final Set<Integer> missingCategoryIds = ConcurrentHashMap.newKeySet();
+    
+    // Per-user date-range indexes in LRU order, kept current by afterCommit.
+    // A build is kept only if the user's write epoch did not move while it
+    // ran, so an index is never both loaded with a row and given it again.
+    private final Map<Integer, DateRangeIndex> rangeIndexes =
+        new LinkedHashMap<Integer, DateRangeIndex>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DateRangeIndex> eldest) {
+                return size() > RANGE_INDEXED_USERS;
+            }
+        };
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+    // Per-user write epochs: [0] = writes begun, [1] = writes finished.
+    // A write begins before its first commit and finishes after listeners
+    // have been told, so a read taken while no write was in flight, with
+    // the epoch unchanged afterwards, saw no row a listener will report later.
+    private final Map<Integer, long[]> writeEpochs = new HashMap<>();
+    
+    /**
+     * Create a database manager using the default pool configuration
+     */
+    public DatabaseManager() {
+        this(new PoolConfig());
+    }
+    
+    /**
+     * Create a database manager backed by a connection pool
+     * 
+     * @param config Connection details and pool limits
+     */
+    public DatabaseManager(PoolConfig config) {
+        this.pool = new ConnectionPool(config);
+    }
     
     /**
-     * Get database connection
+     * Borrow a database connection from the pool
+     * 
+     * Closing the returned connection hands it back to the pool.
      * 
      * @return Connection object or null if failed
      */
     private Connection getConnection() {
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-            return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-        } catch (Exception e) {
+            return pool.getConnection();
+        } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
     }
     
     /**
-     * Initialize database and create tables if they don't exist
+     * Get the maximum number of pooled connections
+     * 
+     * @return Upper bound on concurrently open connections
+     */
+    public int getMaxPoolSize() {
+        return pool.getMaxPoolSize();
+    }
+    
+    /**
+     * Get connection pool statistics
+     * 
+     * @return Active/idle counts and wait times of the pool
+     */
+    public PoolStats getPoolStats() {
+        return pool.getStats();
+    }
+    
+    /**
+     * Get aggregate cache statistics
+     * 
+     * @return Hit/miss/eviction counters of the per-user aggregate cache
+     */
+    public CacheStats getCacheStats() {
+        return aggregateCache.getStats();
+    }
+    
+    /**
+     * Get the category dictionary loaded by initializeDatabase()
+     * 
+     * @return In-memory id/name mapping of the categories table
+     */
+    public CategoryDictionary getCategories() {
+        return categories;
+    }
+    
+    /**
+     * Get the display name of a category
+     * 
+     * Reads only the in-memory dictionary, so it is safe on the JavaFX
+     * Application Thread and in per-row loops. Methods that return
+     * category ids from the database resolve unknown ids first.
+     * 
+     * @param categoryId Category id
+     * @return Category name, or "Unknown" if no such category is known
+     */
+    public String getCategoryName(int categoryId) {
+        String name = categories.nameOf(categoryId);
+        return name == null ? "Unknown" : name;
+    }
+    
+    /**
+     * Make sure the dictionary can name the given category ids
+     * 
+     * Reloads the categories table at most once per call, and only for an
+     * id that has not been missed before, e.g. because another instance
+     * created the category. Ids still unknown after a reload are
+     * remembered and never trigger another one.
+     * 
+     * @param categoryIds Ids about to be displayed
+     */
+    void resolveCategoryNames(Collection<Integer> categoryIds) {
+        boolean reload = false;
+        for (int id : categoryIds) {
+            if (id != CategoryDictionary.NO_ID && categories.nameOf(id) == null
+                    && missingCategoryIds.add(id)) {
+                reload = true;
+            }
+        }
+        if (!reload) {
+            return;
+        }
+        try (Connection conn = pool.getConnection()) {
+            loadCategories(conn);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private List<Transaction> withCategoryNames(List<Transaction> transactions) {
+        Set<Integer> ids = new HashSet<>();
+        for (Transaction t : transactions) {
+            ids.add(t.getCategoryId());
+        }
+        resolveCategoryNames(ids);
+        return transactions;
+    }
+    
+    /**
+     * Get the id of a category, creating the category if it is new
+     * 
+     * Categories are shared by all users and created on demand by imports,
+     * so at most MAX_CATEGORIES are created; the SMALLINT id space is much
+     * larger but every category is held in memory and listed in the UI.
+     * 
+     * @param name Category name
+     * @return Category id, or CategoryDictionary.NO_ID if the name is empty,
+     *         the category limit is reached or the category could not be created
+     */
+    public int getCategoryId(String name) {
+        int id = categories.idOf(name);
+        if (id != CategoryDictionary.NO_ID || name == null || name.isEmpty()) {
+            return id;
+        }
+        if (categories.size() >= MAX_CATEGORIES) {
+            return CategoryDictionary.NO_ID;
+        }
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement insert = conn.prepareStatement(
+                 "INSERT IGNORE INTO categories (name) VALUES (?)");
+             PreparedStatement select = conn.prepareStatement(
+                 "SELECT id FROM categories WHERE name = ?")) {
+            
+            insert.setString(1, name);
+            insert.executeUpdate();
+            select.setString(1, name);
+            ResultSet rs = select.executeQuery();
+            if (rs.next()) {
+                id = rs.getInt("id");
+                categories.register(id, name);
+            }
+            return id;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return CategoryDictionary.NO_ID;
+        }
+    }
+    
+    /**
+     * Read the categories table into the dictionary
+     */
+    private void loadCategories(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, name FROM categories ORDER BY id")) {
+            while (rs.next()) {
+                categories.register(rs.getInt("id"), rs.getString("name"));
+            }
+        }
+    }
+    
+    /**
+     * Release all pooled connections
+     */
+    public void close() {
+        pool.close();
+    }
+    
+    /**
+     * Initialize database and bring the schema up to date
+     * 
+     * Applies any pending SchemaMigrator migrations. When the recorded
+     * schema version is already current no DDL is executed.
      * 
      * @return true if successful, false otherwise
      */
@@ -86,51 +690,8 @@ class DatabaseManager {
                 return false;
             }
             
-            Statement stmt = conn.createStatement();
-            
-            // Create database if it doesn't exist
-            stmt.execute("CREATE DATABASE IF NOT EXISTS fiscalforge");
-            stmt.execute("USE fiscalforge");
-            
-            // Create users table
-            String createUsersTable = 
-                "CREATE TABLE IF NOT EXISTS users (" +
-                "id INT PRIMARY KEY AUTO_INCREMENT," +
-                "username VARCHAR(50) UNIQUE NOT NULL," +
-                "password_hash VARCHAR(64) NOT NULL," +
-                "email VARCHAR(100)," +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
-                ")";
-            stmt.execute(createUsersTable);
-            
-            // Create transactions table
-            String createTransactionsTable = 
-                "CREATE TABLE IF NOT EXISTS transactions (" +
-                "id INT PRIMARY KEY AUTO_INCREMENT," +
-                "user_id INT NOT NULL," +
-                "date DATE NOT NULL," +
-                "type VARCHAR(20) NOT NULL," +
-                "category VARCHAR(50) NOT NULL," +
-                "description TEXT," +
-                "amount DECIMAL(10, 2) NOT NULL," +
-                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
-                ")";
-            stmt.execute(createTransactionsTable);
-            
-            // Create budgets table
-            String createBudgetsTable = 
-                "CREATE TABLE IF NOT EXISTS budgets (" +
-                "id INT PRIMARY KEY AUTO_INCREMENT," +
-                "user_id INT NOT NULL," +
-                "category VARCHAR(50) NOT NULL," +
-                "amount DECIMAL(10, 2) NOT NULL," +
-                "period VARCHAR(20) NOT NULL," +
-                "start_date DATE NOT NULL," +
-                "end_date DATE NOT NULL," +
-                "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
-                ")";
-            stmt.execute(createBudgetsTable);
+            new SchemaMigrator().migrate(conn);
+            loadCategories(conn);
             
             System.out.println("Database initialized successfully");
             return true;
@@ -180,313 +741,7408 @@ class DatabaseManager {
         
         String sql = "INSERT INTO users (username, password_hash, email) VALUES (?, ?, ?)";
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, username);
-            pstmt.setString(2, passwordHash);
-            pstmt.setString(3, email);
-            
-            pstmt.executeUpdate();
-            return true;
-            
-        } catch (SQLException e) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setString(1, username);
+            pstmt.setString(2, passwordHash);
+            pstmt.setString(3, email);
+            
+            pstmt.executeUpdate();
+            return true;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Authenticate user login
+     * 
+     * @param username User's username
+     * @param password User's password
+     * @return User object if authentication successful, null otherwise
+     */
+    public User authenticateUser(String username, String password) {
+        String passwordHash = hashPassword(password);
+        if (passwordHash == null) return null;
+        
+        String sql = "SELECT id, username, email FROM users WHERE username = ? AND password_hash = ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setString(1, username);
+            pstmt.setString(2, passwordHash);
+            
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (rs.next()) {
+                return new User(
+                    rs.getInt("id"),
+                    rs.getString("username"),
+                    rs.getString("email")
+                );
+            }
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Delete a user with all of their transactions, budgets and rollups
+     * 
+     * @param userId User's ID
+     * @return true if a user was deleted, false otherwise
+     */
+    public boolean deleteUser(int userId) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM users WHERE id = ?")) {
+            
+            pstmt.setInt(1, userId);
+            boolean deleted = pstmt.executeUpdate() > 0;
+            aggregateCache.invalidateUser(userId);
+            synchronized (rangeIndexes) {
+                rangeIndexes.remove(userId);
+            }
+            return deleted;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Add new transaction
+     * 
+     * A transaction without a source id is given a unique manual one, so
+     * rows entered by hand are never duplicates of each other.
+     * 
+     * @param transaction Transaction object to add
+     * @return true if added or already stored, false otherwise
+     */
+    public boolean addTransaction(Transaction transaction) {
+        if (transaction.getSourceId() == null) {
+            transaction.setSourceId(manualSourceId());
+        }
+        List<Transaction> committed = new ArrayList<>(1);
+        List<Integer> writing = beginWrites(List.of(transaction));
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(INSERT_TRANSACTION_SQL,
+                                                             Statement.RETURN_GENERATED_KEYS)) {
+            
+            // Insert the row and update its monthly rollup atomically
+            conn.setAutoCommit(false);
+            try {
+                bindTransaction(pstmt, transaction, contentHash(transaction));
+                pstmt.executeUpdate();
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        transaction.setId(keys.getInt(1));
+                    }
+                }
+                applyRollupDeltas(conn, List.of(transaction));
+                conn.commit();
+                afterCommit(List.of(transaction), committed);
+            } catch (SQLException e) {
+                conn.rollback();
+                if (isDuplicateContentHash(e)) {
+                    return true;
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            // The connection is back in the pool by now
+            notifyListeners(committed);
+            endWrites(writing);
+        }
+    }
+    
+    /**
+     * Add many transactions using JDBC batching
+     * 
+     * @param transactions Transactions to add
+     * @return Generated ids and per-row failures
+     */
+    public BatchInsertResult addTransactions(Collection<Transaction> transactions) {
+        return addTransactions(transactions, DEFAULT_BATCH_SIZE, null);
+    }
+    
+    /**
+     * Add imported transactions, skipping those already stored
+     * 
+     * @param transactions Transactions to add, with source ids set
+     * @param seen Content hashes the user may already have, from
+     *             loadContentHashFilter; rows it has never seen skip the
+     *             duplicate lookup. Inserted rows are added to it. May be null
+     * @return Generated ids, duplicates and per-row failures
+     */
+    public BatchInsertResult addTransactions(Collection<Transaction> transactions, BloomFilter seen) {
+        return addTransactions(transactions, DEFAULT_BATCH_SIZE, seen);
+    }
+    
+    public BatchInsertResult addTransactions(Collection<Transaction> transactions, int batchSize) {
+        return addTransactions(transactions, batchSize, null);
+    }
+    
+    /**
+     * Add many transactions using JDBC batching
+     * 
+     * Rows are sent in chunks of batchSize, each chunk committed as one
+     * database transaction. If a chunk is rejected it is rolled back and
+     * replayed row by row, so one bad row is reported as a failure instead
+     * of aborting the rest of the import. Successfully inserted transactions
+     * have their id set to the generated key.
+     * 
+     * A transaction whose content hash the user already has, or that
+     * repeats an earlier row of the same call, is reported as a duplicate
+     * and not inserted. Transactions without a source id are given a
+     * unique manual one.
+     * 
+     * @param transactions Transactions to add
+     * @param batchSize Number of rows per JDBC batch and per commit
+     * @param seen Filter of the user's content hashes, may be null
+     * @return Generated ids, duplicates and per-row failures
+     */
+    public BatchInsertResult addTransactions(Collection<Transaction> transactions, int batchSize,
+                                             BloomFilter seen) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        
+        List<Transaction> rows = new ArrayList<>(transactions);
+        int[] generatedIds = new int[rows.size()];
+        List<BatchFailure> failures = new ArrayList<>();
+        List<Integer> duplicates = new ArrayList<>();
+        Set<ByteBuffer> submitted = new HashSet<>();
+        List<Transaction> committed = new ArrayList<>();
+        List<Integer> writing = beginWrites(rows);
+        int chunkStart = 0;
+        
+        try (Connection conn = getConnection()) {
+            if (conn == null) {
+                throw new SQLException("No database connection available");
+            }
+            
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_TRANSACTION_SQL,
+                                                                 Statement.RETURN_GENERATED_KEYS)) {
+                for (; chunkStart < rows.size(); chunkStart += batchSize) {
+                    int chunkEnd = Math.min(chunkStart + batchSize, rows.size());
+                    insertChunk(conn, pstmt, rows, chunkStart, chunkEnd, seen, submitted,
+                                generatedIds, failures, duplicates, committed);
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            // Everything from the chunk that was in flight onwards is lost
+            Set<Integer> alreadyFailed = new HashSet<>(duplicates);
+            for (BatchFailure failure : failures) {
+                alreadyFailed.add(failure.getIndex());
+            }
+            for (int i = chunkStart; i < rows.size(); i++) {
+                if (generatedIds[i] == 0 && !alreadyFailed.contains(i)) {
+                    failures.add(new BatchFailure(i, rows.get(i), e.getMessage()));
+                }
+            }
+        } finally {
+            // Chunks committed before any failure are still reported
+            notifyListeners(committed);
+            endWrites(writing);
+        }
+        
+        return new BatchInsertResult(generatedIds, failures, duplicates);
+    }
+    
+    /**
+     * Insert rows [from, to) as a single JDBC batch and commit them
+     * 
+     * Duplicates are removed before the batch is sent, since one stored
+     * hash would make the unique index reject the whole batch and force a
+     * row-by-row replay. Only rows that arrived with a source id can match
+     * a stored row, and of those only the ones the filter may have seen
+     * are looked up, in one query for the chunk.
+     */
+    private void insertChunk(Connection conn, PreparedStatement pstmt, List<Transaction> rows,
+                             int from, int to, BloomFilter seen, Set<ByteBuffer> submitted,
+                             int[] generatedIds, List<BatchFailure> failures,
+                             List<Integer> duplicates, List<Transaction> committed) throws SQLException {
+        byte[][] hashes = new byte[to - from][];
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Transaction t = rows.get(i);
+            String problem = validateTransaction(t);
+            if (problem != null) {
+                failures.add(new BatchFailure(i, t, problem));
+                continue;
+            }
+            boolean sourced = t.getSourceId() != null;
+            if (!sourced) {
+                t.setSourceId(manualSourceId());
+            }
+            byte[] hash = contentHash(t);
+            if (!submitted.add(ByteBuffer.wrap(hash))) {
+                duplicates.add(i);
+                continue;
+            }
+            hashes[i - from] = hash;
+            if (sourced && (seen == null || seen.mightContain(hash))) {
+                candidates.add(i);
+            }
+        }
+        
+        Set<ByteBuffer> stored = storedContentHashes(conn, rows, candidates, hashes, from);
+        List<Integer> batched = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            byte[] hash = hashes[i - from];
+            if (hash == null) {
+                continue;
+            }
+            if (stored.contains(ByteBuffer.wrap(hash))) {
+                duplicates.add(i);
+                continue;
+            }
+            bindTransaction(pstmt, rows.get(i), hash);
+            pstmt.addBatch();
+            batched.add(i);
+        }
+        if (batched.isEmpty()) {
+            return;
+        }
+        
+        try {
+            pstmt.executeBatch();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                for (int index : batched) {
+                    if (!keys.next()) break;
+                    generatedIds[index] = keys.getInt(1);
+                }
+            }
+            applyRollupDeltas(conn, inserted(rows, batched));
+            conn.commit();
+        } catch (SQLException e) {
+            pstmt.clearBatch();
+            conn.rollback();
+            Arrays.fill(generatedIds, from, to, 0);
+            insertRowByRow(conn, pstmt, rows, batched, hashes, from, generatedIds, failures, duplicates,
+                           committed);
+            addToFilter(seen, batched, hashes, from, generatedIds);
+            return;
+        }
+        
+        for (int index : batched) {
+            rows.get(index).setId(generatedIds[index]);
+        }
+        addToFilter(seen, batched, hashes, from, generatedIds);
+        afterCommit(inserted(rows, batched), committed);
+    }
+    
+    /**
+     * Find which of the candidate rows' content hashes are already stored
+     */
+    private Set<ByteBuffer> storedContentHashes(Connection conn, List<Transaction> rows, List<Integer> candidates,
+                                                byte[][] hashes, int from) throws SQLException {
+        Set<ByteBuffer> stored = new HashSet<>();
+        if (candidates.isEmpty()) {
+            return stored;
+        }
+        
+        // Group by user so each lookup is a range of the (user_id, content_hash) index
+        Map<Integer, List<byte[]>> byUser = new LinkedHashMap<>();
+        for (int index : candidates) {
+            byUser.computeIfAbsent(rows.get(index).getUserId(), k -> new ArrayList<>())
+                  .add(hashes[index - from]);
+        }
+        for (Map.Entry<Integer, List<byte[]>> entry : byUser.entrySet()) {
+            List<byte[]> userHashes = entry.getValue();
+            String sql = "SELECT content_hash FROM transactions WHERE user_id = ? AND content_hash IN (" +
+                         String.join(", ", Collections.nCopies(userHashes.size(), "?")) + ")";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, entry.getKey());
+                for (int i = 0; i < userHashes.size(); i++) {
+                    pstmt.setBytes(i + 2, userHashes.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        stored.add(ByteBuffer.wrap(rs.getBytes(1)));
+                    }
+                }
+            }
+        }
+        return stored;
+    }
+    
+    private static void addToFilter(BloomFilter seen, List<Integer> indexes, byte[][] hashes, int from,
+                                    int[] generatedIds) {
+        if (seen == null) {
+            return;
+        }
+        for (int index : indexes) {
+            if (generatedIds[index] != 0) {
+                seen.add(hashes[index - from]);
+            }
+        }
+    }
+    
+    private static List<Transaction> inserted(List<Transaction> rows, List<Integer> indexes) {
+        List<Transaction> inserted = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            inserted.add(rows.get(index));
+        }
+        return inserted;
+    }
+    
+    /**
+     * Replay a rejected batch one row at a time, skipping the rows that fail
+     */
+    private void insertRowByRow(Connection conn, PreparedStatement pstmt, List<Transaction> rows,
+                                List<Integer> indexes, byte[][] hashes, int from, int[] generatedIds,
+                                List<BatchFailure> failures, List<Integer> duplicates,
+                                List<Transaction> committed) throws SQLException {
+        List<Transaction> inserted = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            Transaction t = rows.get(index);
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                bindTransaction(pstmt, t, hashes[index - from]);
+                pstmt.executeUpdate();
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        generatedIds[index] = keys.getInt(1);
+                    }
+                }
+                inserted.add(t);
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                if (isDuplicateContentHash(e)) {
+                    // Stored by another import since the duplicate lookup
+                    duplicates.add(index);
+                } else {
+                    failures.add(new BatchFailure(index, t, e.getMessage()));
+                }
+            }
+        }
+        applyRollupDeltas(conn, inserted);
+        conn.commit();
+        
+        for (int index : indexes) {
+            if (generatedIds[index] != 0) {
+                rows.get(index).setId(generatedIds[index]);
+            }
+        }
+        afterCommit(inserted, committed);
+    }
+    
+    /**
+     * Add newly inserted transactions to their monthly rollups
+     * 
+     * Deltas are summed per (user, type, month, category) first so a
+     * chunk of imported rows costs one upsert per distinct rollup row.
+     * Must run inside the transaction that inserted the rows.
+     */
+    private void applyRollupDeltas(Connection conn, Collection<Transaction> inserted) throws SQLException {
+        if (inserted.isEmpty()) {
+            return;
+        }
+        
+        // Per key: [0] = sum in minor units, [1] = row count
+        Map<List<Integer>, long[]> deltas = new LinkedHashMap<>();
+        for (Transaction t : inserted) {
+            List<Integer> key = List.of(t.getUserId(), t.getType().getCode(),
+                                        toMonthKey(YearMonth.from(t.getDate())), t.getCategoryId());
+            long[] delta = deltas.computeIfAbsent(key, k -> new long[2]);
+            delta[0] = Money.add(delta[0], t.getAmountMinor());
+            delta[1]++;
+        }
+        
+        try (PreparedStatement pstmt = conn.prepareStatement(UPSERT_ROLLUP_SQL)) {
+            for (Map.Entry<List<Integer>, long[]> entry : deltas.entrySet()) {
+                List<Integer> key = entry.getKey();
+                pstmt.setInt(1, key.get(0));
+                pstmt.setInt(2, key.get(1));
+                pstmt.setInt(3, key.get(2));
+                pstmt.setInt(4, key.get(3));
+                pstmt.setBigDecimal(5, Money.toDecimal(entry.getValue()[0]));
+                pstmt.setLong(6, entry.getValue()[1]);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+    
+    /**
+     * Invalidate cached aggregates touched by newly committed transactions
+     * 
+     * Listeners are not called here: the rows are added to committed and
+     * passed to notifyListeners once the connection has been released, so
+     * a slow listener never holds a pooled connection.
+     */
+    private void afterCommit(List<Transaction> inserted, List<Transaction> committed) {
+        if (inserted.isEmpty()) {
+            return;
+        }
+        committed.addAll(inserted);
+        
+        Set<List<Object>> touched = new HashSet<>();
+        for (Transaction t : inserted) {
+            if (touched.add(List.of(t.getUserId(), t.getType()))) {
+                aggregateCache.invalidate(t.getUserId(), t.getType());
+            }
+        }
+        
+        synchronized (rangeIndexes) {
+            for (Transaction t : inserted) {
+                DateRangeIndex index = rangeIndexes.get(t.getUserId());
+                if (index != null) {
+                    index.add(t);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tell listeners about committed transactions
+     * 
+     * Must be called without holding a pooled connection.
+     */
+    private void notifyListeners(List<Transaction> committed) {
+        if (committed.isEmpty()) {
+            return;
+        }
+        
+        List<Transaction> added = Collections.unmodifiableList(committed);
+        for (TransactionListener listener : listeners) {
+            try {
+                listener.onTransactionsAdded(added);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Begin a write for each user with rows in transactions
+     * 
+     * Must be called before the first commit, and the result passed to
+     * endWrites once listeners have been notified.
+     * 
+     * @return Users whose write was begun
+     */
+    private List<Integer> beginWrites(Collection<Transaction> transactions) {
+        Set<Integer> users = new LinkedHashSet<>();
+        for (Transaction t : transactions) {
+            users.add(t.getUserId());
+        }
+        synchronized (writeEpochs) {
+            for (int userId : users) {
+                writeEpochs.computeIfAbsent(userId, k -> new long[2])[0]++;
+            }
+        }
+        return new ArrayList<>(users);
+    }
+    
+    private void endWrites(List<Integer> users) {
+        synchronized (writeEpochs) {
+            for (int userId : users) {
+                writeEpochs.get(userId)[1]++;
+            }
+        }
+    }
+    
+    /**
+     * Get a user's write epoch, for detecting writes that race a read
+     * 
+     * A read that starts at epoch e and finds the epoch still e once it
+     * has finished saw every committed row for the user, and listeners
+     * will report only rows it did not see. Epochs never go back to an
+     * earlier value.
+     * 
+     * @param userId User's ID
+     * @return Number of writes begun for the user, or -1 while one is in flight
+     */
+    long writeEpoch(int userId) {
+        synchronized (writeEpochs) {
+            long[] epoch = writeEpochs.get(userId);
+            if (epoch == null) {
+                return 0;
+            }
+            return epoch[0] == epoch[1] ? epoch[0] : -1;
+        }
+    }
+    
+    /**
+     * Register a listener for committed transactions
+     * 
+     * @param listener Called after every successful insert
+     */
+    public void addTransactionListener(TransactionListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeTransactionListener(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Recompute one user's monthly rollups from the transactions table
+     * 
+     * Repairs any drift between the rollups and the raw rows.
+     * 
+     * @param userId User's ID
+     * @return true if successful, false otherwise
+     */
+    public boolean rebuildMonthlyRollups(int userId) {
+        return rebuildRollups(" WHERE user_id = ?", userId);
+    }
+    
+    /**
+     * Recompute the monthly rollups of every user
+     * 
+     * @return true if successful, false otherwise
+     */
+    public boolean rebuildAllMonthlyRollups() {
+        return rebuildRollups("", null);
+    }
+    
+    private boolean rebuildRollups(String where, Integer userId) {
+        try (Connection conn = getConnection();
+             PreparedStatement delete = conn.prepareStatement("DELETE FROM monthly_rollups" + where);
+             PreparedStatement insert = conn.prepareStatement(
+                 "INSERT INTO monthly_rollups (user_id, type_code, month_key, category_id, total, txn_count) " +
+                 "SELECT user_id, type_code, month_key, category_id, SUM(amount), COUNT(*) " +
+                 "FROM transactions" + where + " GROUP BY user_id, type_code, month_key, category_id")) {
+            
+            conn.setAutoCommit(false);
+            try {
+                if (userId != null) {
+                    delete.setInt(1, userId);
+                    insert.setInt(1, userId);
+                }
+                delete.executeUpdate();
+                insert.executeUpdate();
+                conn.commit();
+                if (userId != null) {
+                    aggregateCache.invalidateUser(userId);
+                } else {
+                    aggregateCache.clear();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Check a transaction for missing required fields
+     * 
+     * @return Description of the problem, or null if the row is insertable
+     */
+    private String validateTransaction(Transaction t) {
+        if (t == null) return "Transaction is null";
+        if (t.getDate() == null) return "Missing date";
+        if (t.getType() == null) return "Missing type";
+        if (t.getCategoryId() == CategoryDictionary.NO_ID) return "Missing category";
+        return null;
+    }
+    
+    /**
+     * Bind a transaction to the parameters of INSERT_TRANSACTION_SQL
+     */
+    private void bindTransaction(PreparedStatement pstmt, Transaction transaction, byte[] contentHash)
+            throws SQLException {
+        pstmt.setInt(1, transaction.getUserId());
+        pstmt.setDate(2, java.sql.Date.valueOf(transaction.getDate()));
+        pstmt.setInt(3, transaction.getType().getCode());
+        pstmt.setInt(4, transaction.getCategoryId());
+        pstmt.setString(5, transaction.getDescription());
+        pstmt.setBigDecimal(6, Money.toDecimal(transaction.getAmountMinor()));
+        pstmt.setString(7, transaction.getCurrency().getCurrencyCode());
+        pstmt.setBytes(8, contentHash);
+    }
+    
+    /**
+     * Stable identity of a transaction, stored in the content_hash column
+     * 
+     * The first 16 bytes of SHA-256 over the user, date, signed amount,
+     * normalised description and source id.
+     * 
+     * @param t Transaction with date, type and source id set
+     * @return 16-byte hash
+     * @throws IllegalArgumentException if the source id is not set
+     */
+    static byte[] contentHash(Transaction t) {
+        if (t.getSourceId() == null) {
+            throw new IllegalArgumentException("Transaction has no source id");
+        }
+        StringBuilder text = new StringBuilder(96)
+            .append(t.getUserId()).append('\n')
+            .append(t.getDate()).append('\n')
+            .append(signedAmount(t.getType(), t.getAmountMinor())).append('\n')
+            .append(normalizeDescription(t.getDescription())).append('\n')
+            .append(t.getSourceId());
+        byte[] digest = CONTENT_DIGEST.get().digest(text.toString().getBytes(StandardCharsets.UTF_8));
+        return Arrays.copyOf(digest, CONTENT_HASH_BYTES);
+    }
+    
+    /**
+     * @return A source id no other transaction has, for rows entered by hand
+     */
+    static String manualSourceId() {
+        return "manual:" + UUID.randomUUID();
+    }
+    
+    /**
+     * @return true if an insert failed because its content hash is already stored
+     */
+    private static boolean isDuplicateContentHash(SQLException e) {
+        return e.getErrorCode() == DUPLICATE_ENTRY_ERROR && e.getMessage() != null
+            && e.getMessage().contains(CONTENT_HASH_INDEX);
+    }
+    
+    /**
+     * @return Amount negated for expenses, as a statement shows it
+     */
+    static long signedAmount(TransactionType type, long amountMinor) {
+        return type == TransactionType.EXPENSE ? -amountMinor : amountMinor;
+    }
+    
+    /**
+     * Description as compared for duplicates: trimmed, lower case, with
+     * runs of whitespace collapsed to one space
+     */
+    static String normalizeDescription(String description) {
+        if (description == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(description.length());
+        boolean space = false;
+        for (int i = 0; i < description.length(); i++) {
+            char c = description.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Load a user's content hashes into a Bloom filter for an import
+     * 
+     * @param userId User's ID
+     * @param expectedNewRows Rows the import is expected to add, so the
+     *                        filter keeps its error rate as they are added
+     * @return Filter of the user's stored hashes, or null on error
+     */
+    public BloomFilter loadContentHashFilter(int userId, long expectedNewRows) {
+        try (Connection conn = getConnection();
+             PreparedStatement count = conn.prepareStatement(
+                 "SELECT COUNT(*) FROM transactions WHERE user_id = ?");
+             PreparedStatement select = conn.prepareStatement(
+                 "SELECT content_hash FROM transactions WHERE user_id = ?",
+                 ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            
+            count.setInt(1, userId);
+            long stored;
+            try (ResultSet rs = count.executeQuery()) {
+                rs.next();
+                stored = rs.getLong(1);
+            }
+            
+            BloomFilter filter = new BloomFilter(stored + Math.max(expectedNewRows, 0), CONTENT_HASH_FILTER_FPP);
+            select.setInt(1, userId);
+            select.setFetchSize(STREAMING_FETCH_SIZE);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    filter.add(rs.getBytes(1));
+                }
+            }
+            return filter;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Get one page of a user's transactions, newest first
+     * 
+     * Seeks on (date, id) rather than using OFFSET, so fetching any page
+     * costs the same regardless of how much history lies before it.
+     * 
+     * @param userId User's ID
+     * @param after Cursor returned with the previous page, or null for the first page
+     * @param pageSize Maximum number of transactions to return
+     * @return Page of transactions with the cursor for the next page
+     */
+    public TransactionPage getTransactionsPage(int userId, PageCursor after, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        
+        List<Transaction> transactions = new ArrayList<>(pageSize);
+        String sql = after == null
+            ? "SELECT * FROM transactions WHERE user_id = ? " +
+              "ORDER BY date DESC, id DESC LIMIT ?"
+            : "SELECT * FROM transactions WHERE user_id = ? " +
+              "AND (date < ? OR (date = ? AND id < ?)) " +
+              "ORDER BY date DESC, id DESC LIMIT ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int param = 1;
+            pstmt.setInt(param++, userId);
+            if (after != null) {
+                java.sql.Date afterDate = java.sql.Date.valueOf(after.getDate());
+                pstmt.setDate(param++, afterDate);
+                pstmt.setDate(param++, afterDate);
+                pstmt.setInt(param++, after.getId());
+            }
+            // Fetch one extra row to learn whether another page exists
+            pstmt.setInt(param, pageSize + 1);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                transactions.add(mapTransaction(rs));
+            }
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        PageCursor next = null;
+        if (transactions.size() > pageSize) {
+            transactions.remove(pageSize);
+            Transaction last = transactions.get(pageSize - 1);
+            next = new PageCursor(last.getDate(), last.getId());
+        }
+        return new TransactionPage(withCategoryNames(transactions), next);
+    }
+    
+    /**
+     * Get recent transactions for a user
+     * 
+     * @param userId User's ID
+     * @param limit Maximum number of transactions to return
+     * @return List of recent transactions
+     */
+    public List<Transaction> getRecentTransactions(int userId, int limit) {
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = "SELECT * FROM transactions WHERE user_id = ? ORDER BY date DESC, id DESC LIMIT ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, limit);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                transactions.add(mapTransaction(rs));
+            }
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        return withCategoryNames(transactions);
+    }
+    
+    /**
+     * Load a user's transactions into a columnar store for analytics
+     * 
+     * Rows are streamed in date order and copied straight into the store's
+     * arrays. The date and amount arrive as integers (days since the epoch
+     * and minor units), so no Transaction, LocalDate or BigDecimal objects
+     * are created per row.
+     * 
+     * @param userId User's ID
+     * @return The user's transactions, or null on database error
+     */
+    public TransactionStore loadTransactionStore(int userId) {
+        Map<Integer, TransactionStore> stores = loadTransactionStores(" WHERE user_id = ?", userId);
+        if (stores == null) {
+            return null;
+        }
+        TransactionStore store = stores.get(userId);
+        return store != null ? store : new TransactionStore(0);
+    }
+    
+    /**
+     * Load every user's transactions into columnar stores
+     * 
+     * Intended for admin-wide reports; see ParallelAnalytics.
+     * 
+     * @return Store per user ID, or null on database error
+     */
+    public Map<Integer, TransactionStore> loadAllTransactionStores() {
+        return loadTransactionStores("", null);
+    }
+    
+    private Map<Integer, TransactionStore> loadTransactionStores(String where, Integer userId) {
+        String sql = "SELECT user_id, TO_DAYS(date) - TO_DAYS('1970-01-01') AS epoch_day, type_code, " +
+                     "category_id, CAST(amount * 100 AS SIGNED) AS amount_minor, description " +
+                     "FROM transactions" + where + " ORDER BY user_id, date, id";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                              ResultSet.CONCUR_READ_ONLY)) {
+            
+            pstmt.setFetchSize(STREAMING_FETCH_SIZE);
+            if (userId != null) {
+                pstmt.setInt(1, userId);
+            }
+            
+            Map<Integer, TransactionStore> stores = new LinkedHashMap<>();
+            TransactionStore store = null;
+            int storeUser = 0;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int rowUser = rs.getInt("user_id");
+                    // Rows arrive grouped by user, so only a user change needs a lookup
+                    if (store == null || rowUser != storeUser) {
+                        store = stores.computeIfAbsent(rowUser, id -> new TransactionStore());
+                        storeUser = rowUser;
+                    }
+                    store.append(
+                        rs.getInt("epoch_day"),
+                        TransactionType.fromCode(rs.getInt("type_code")),
+                        rs.getInt("category_id"),
+                        rs.getLong("amount_minor"),
+                        rs.getString("description")
+                    );
+                }
+            }
+            for (TransactionStore loaded : stores.values()) {
+                loaded.trimToSize();
+            }
+            return stores;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Map the current row of a transactions result set
+     */
+    private Transaction mapTransaction(ResultSet rs) throws SQLException {
+        return new Transaction(
+            rs.getInt("id"),
+            rs.getInt("user_id"),
+            rs.getDate("date").toLocalDate(),
+            TransactionType.fromCode(rs.getInt("type_code")),
+            rs.getInt("category_id"),
+            rs.getString("description"),
+            Money.fromDecimal(rs.getBigDecimal("amount")),
+            Currency.getInstance(rs.getString("currency"))
+        );
+    }
+    
+    /**
+     * Get total income for a user
+     * 
+     * @param userId User's ID
+     * @return Total income in minor units
+     */
+    public long getTotalIncome(int userId) {
+        return aggregateCache.getOrLoad(userId, "totalIncome", TransactionType.INCOME,
+                                        () -> queryTotal(userId, TransactionType.INCOME), 0L);
+    }
+    
+    /**
+     * Get total expenses for a user
+     * 
+     * @param userId User's ID
+     * @return Total expenses in minor units
+     */
+    public long getTotalExpenses(int userId) {
+        return aggregateCache.getOrLoad(userId, "totalExpenses", TransactionType.EXPENSE,
+                                        () -> queryTotal(userId, TransactionType.EXPENSE), 0L);
+    }
+    
+    /**
+     * Sum a user's rollups of one transaction type
+     */
+    private long queryTotal(int userId, TransactionType type) throws SQLException {
+        String sql = "SELECT SUM(total) as total FROM monthly_rollups WHERE user_id = ? AND type_code = ?";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, type.getCode());
+            ResultSet rs = pstmt.executeQuery();
+            
+            return rs.next() ? Money.fromDecimal(rs.getBigDecimal("total")) : 0L;
+        }
+    }
+    
+    /**
+     * Get expenses grouped by category
+     * 
+     * @param userId User's ID
+     * @return Map of category to total in minor units, largest first
+     */
+    public Map<String, Long> getExpensesByCategory(int userId) {
+        return aggregateCache.getOrLoad(userId, "expensesByCategory", TransactionType.EXPENSE,
+                                        () -> queryExpensesByCategory(userId), Collections.emptyMap());
+    }
+    
+    private Map<String, Long> queryExpensesByCategory(int userId) throws SQLException {
+        Map<Integer, Long> byId = new LinkedHashMap<>();
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(EXPENSES_BY_CATEGORY_SQL)) {
+            
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                byId.put(rs.getInt("category_id"), Money.fromDecimal(rs.getBigDecimal("total")));
+            }
+        }
+        
+        resolveCategoryNames(byId.keySet());
+        Map<String, Long> categoryExpenses = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Long> entry : byId.entrySet()) {
+            categoryExpenses.put(getCategoryName(entry.getKey()), entry.getValue());
+        }
+        return Collections.unmodifiableMap(categoryExpenses);
+    }
+    
+    /**
+     * Get monthly expenses for trend analysis
+     * 
+     * @param userId User's ID
+     * @return Map of month (yyyy-MM) to total expenses in minor units for the
+     *         last 12 months, oldest first
+     */
+    public Map<String, Long> getMonthlyExpenses(int userId) {
+        YearMonth current = YearMonth.now();
+        return getMonthlyExpenses(userId, current.minusMonths(TREND_MONTHS - 1), current);
+    }
+    
+    /**
+     * Get monthly expenses for an explicit window of months
+     * 
+     * The user's whole expense series is cached once, keyed by month, and
+     * each window is cut from it, so arbitrary windows add no cache keys.
+     * The series is read from the monthly_rollups table, whose primary key
+     * starts with (user_id, type_code, month_key), in one primary key range
+     * scan over at most one row per month and category.
+     * 
+     * @param userId User's ID
+     * @param from First month to include
+     * @param to Last month to include
+     * @return Map of month (yyyy-MM) to total expenses in minor units, oldest first
+     */
+    public Map<String, Long> getMonthlyExpenses(int userId, YearMonth from, YearMonth to) {
+        NavigableMap<Integer, Long> byMonth =
+            aggregateCache.getOrLoad(userId, "monthlyExpenses", TransactionType.EXPENSE,
+                                     () -> queryMonthlyExpenses(userId),
+                                     Collections.emptyNavigableMap());
+        
+        Map<String, Long> monthlyExpenses = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Long> entry :
+                byMonth.subMap(toMonthKey(from), true, toMonthKey(to), true).entrySet()) {
+            monthlyExpenses.put(formatMonthKey(entry.getKey()), entry.getValue());
+        }
+        return Collections.unmodifiableMap(monthlyExpenses);
+    }
+    
+    /**
+     * Read a user's expense total for every month with expenses
+     * 
+     * @return Map of month_key to total in minor units
+     */
+    private NavigableMap<Integer, Long> queryMonthlyExpenses(int userId) throws SQLException {
+        NavigableMap<Integer, Long> byMonth = new TreeMap<>();
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(MONTHLY_EXPENSES_SQL)) {
+            
+            // Every month: month_key is always a positive yyyymm value
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, 0);
+            pstmt.setInt(3, Integer.MAX_VALUE);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                byMonth.put(rs.getInt("month_key"), Money.fromDecimal(rs.getBigDecimal("total")));
+            }
+        }
+        
+        return Collections.unmodifiableNavigableMap(byMonth);
+    }
+    
+    /**
+     * Get income and expense totals between two dates
+     * 
+     * Answered from the user's DateRangeIndex in O(log days). The index is
+     * built from one aggregate query on first use and then updated by
+     * every insert, so later calls do not touch the database.
+     * 
+     * @param userId User's ID
+     * @param from First date, inclusive
+     * @param to Last date, inclusive
+     * @param categoryId Category to restrict to, or null for all categories
+     * @return Totals in minor units, or null on database error
+     */
+    public RangeTotals getTotals(int userId, LocalDate from, LocalDate to, Integer categoryId) {
+        DateRangeIndex index = getDateRangeIndex(userId);
+        return index == null ? null : index.totals(from, to, categoryId);
+    }
+    
+    private DateRangeIndex getDateRangeIndex(int userId) {
+        synchronized (rangeIndexes) {
+            DateRangeIndex index = rangeIndexes.get(userId);
+            if (index != null) {
+                return index;
+            }
+        }
+        
+        long epoch = writeEpoch(userId);
+        DateRangeIndex loaded = loadDateRangeIndex(userId);
+        synchronized (rangeIndexes) {
+            // Keep the index only if no write for this user was in flight
+            // during the load. afterCommit adds rows under this lock, so
+            // every later commit reaches the kept index exactly once.
+            if (epoch >= 0 && writeEpoch(userId) == epoch && loaded != null) {
+                rangeIndexes.put(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+    
+    /**
+     * Build a user's date-range index from per-day sums
+     */
+    private DateRangeIndex loadDateRangeIndex(int userId) {
+        DateRangeIndex index = new DateRangeIndex();
+        return forEachDailyTotal(userId, null, null, index::add) ? index : null;
+    }
+    
+    /**
+     * Receives one (day, type, category) sum from forEachDailyTotal
+     */
+    interface DailyTotalConsumer {
+        void accept(int epochDay, TransactionType type, int categoryId, long totalMinor);
+    }
+    
+    /**
+     * Read a user's sums per (day, type, category) in minor units
+     * 
+     * @param userId User's ID
+     * @param from First date, inclusive, or null for no lower bound
+     * @param to Last date, inclusive, or null for no upper bound
+     * @param consumer Receives each sum, oldest day first
+     * @return true if successful, false on database error
+     */
+    public boolean forEachDailyTotal(int userId, LocalDate from, LocalDate to, DailyTotalConsumer consumer) {
+        String sql = "SELECT TO_DAYS(date) - TO_DAYS('1970-01-01') AS epoch_day, type_code, category_id, " +
+                     "CAST(SUM(amount) * 100 AS SIGNED) AS total_minor FROM transactions " +
+                     "WHERE user_id = ?" +
+                     (from != null ? " AND date >= ?" : "") +
+                     (to != null ? " AND date <= ?" : "") +
+                     " GROUP BY date, type_code, category_id ORDER BY date";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            int param = 1;
+            pstmt.setInt(param++, userId);
+            if (from != null) {
+                pstmt.setDate(param++, java.sql.Date.valueOf(from));
+            }
+            if (to != null) {
+                pstmt.setDate(param, java.sql.Date.valueOf(to));
+            }
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                consumer.accept(
+                    rs.getInt("epoch_day"),
+                    TransactionType.fromCode(rs.getInt("type_code")),
+                    rs.getInt("category_id"),
+                    rs.getLong("total_minor")
+                );
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Add a budget
+     * 
+     * @param budget Budget to insert; its id is set on success
+     * @return true if successful, false otherwise
+     */
+    public boolean addBudget(Budget budget) {
+        String sql = "INSERT INTO budgets (user_id, category_id, amount, period, start_date, end_date) " +
+                     "VALUES (?, ?, ?, ?, ?, ?)";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            
+            pstmt.setInt(1, budget.getUserId());
+            pstmt.setInt(2, budget.getCategoryId());
+            pstmt.setBigDecimal(3, Money.toDecimal(budget.getAmountMinor()));
+            pstmt.setString(4, budget.getPeriod().getLabel());
+            pstmt.setDate(5, java.sql.Date.valueOf(budget.getStartDate()));
+            pstmt.setDate(6, java.sql.Date.valueOf(budget.getEndDate()));
+            pstmt.executeUpdate();
+            
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    budget.setId(keys.getInt(1));
+                }
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Get a user's budgets that have not ended
+     * 
+     * @param userId User's ID
+     * @param day Budgets ending before this day are skipped
+     * @return Budgets ordered by start date, or null on database error
+     */
+    public List<Budget> getBudgets(int userId, LocalDate day) {
+        String sql = "SELECT * FROM budgets WHERE user_id = ? AND end_date >= ? ORDER BY start_date, id";
+        List<Budget> budgets = new ArrayList<>();
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setDate(2, java.sql.Date.valueOf(day));
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                budgets.add(new Budget(
+                    rs.getInt("id"),
+                    rs.getInt("user_id"),
+                    rs.getInt("category_id"),
+                    Money.fromDecimal(rs.getBigDecimal("amount")),
+                    BudgetPeriod.fromLabel(rs.getString("period")),
+                    rs.getDate("start_date").toLocalDate(),
+                    rs.getDate("end_date").toLocalDate()
+                ));
+            }
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        
+        Set<Integer> categoryIds = new HashSet<>();
+        for (Budget budget : budgets) {
+            categoryIds.add(budget.getCategoryId());
+        }
+        resolveCategoryNames(categoryIds);
+        return budgets;
+    }
+    
+    /**
+     * Receives one (type, month, category) sum from forEachMonthlyBucket
+     */
+    interface BucketConsumer {
+        void accept(TransactionType type, int monthKey, int categoryId, long totalMinor);
+    }
+    
+    /**
+     * Read a user's sums per (type, month, category) in minor units
+     * 
+     * @param userId User's ID
+     * @param fromTransactions true to aggregate the raw transactions table
+     *                         instead of reading monthly_rollups
+     * @param consumer Receives each bucket
+     * @return true if successful, false on database error
+     */
+    public boolean forEachMonthlyBucket(int userId, boolean fromTransactions, BucketConsumer consumer) {
+        String sql = fromTransactions
+            ? "SELECT type_code, month_key, category_id, SUM(amount) AS total FROM transactions " +
+              "WHERE user_id = ? GROUP BY type_code, month_key, category_id"
+            : "SELECT type_code, month_key, category_id, total FROM monthly_rollups WHERE user_id = ?";
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                consumer.accept(
+                    TransactionType.fromCode(rs.getInt("type_code")),
+                    rs.getInt("month_key"),
+                    rs.getInt("category_id"),
+                    Money.fromDecimal(rs.getBigDecimal("total"))
+                );
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Read a user's rollups per (type, month, category) for a range of months
+     * 
+     * @param userId User's ID
+     * @param from First month, inclusive
+     * @param to Last month, inclusive
+     * @param consumer Receives each rollup row
+     * @return true if successful, false on database error
+     */
+    public boolean forEachMonthlyBucket(int userId, YearMonth from, YearMonth to, BucketConsumer consumer) {
+        String sql = "SELECT type_code, month_key, category_id, total FROM monthly_rollups " +
+                     "WHERE user_id = ? AND month_key BETWEEN ? AND ?";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, toMonthKey(from));
+            pstmt.setInt(3, toMonthKey(to));
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                consumer.accept(
+                    TransactionType.fromCode(rs.getInt("type_code")),
+                    rs.getInt("month_key"),
+                    rs.getInt("category_id"),
+                    Money.fromDecimal(rs.getBigDecimal("total"))
+                );
+            }
+            return true;
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Explain the monthly expenses query for a window of months
+     * 
+     * The query should be answered by a range scan of the monthly_rollups
+     * primary key over (user_id, type_code, month_key).
+     * 
+     * @param userId User's ID
+     * @param from First month of the window
+     * @param to Last month of the window
+     * @return MySQL's plan for the query, or null on database error
+     */
+    public QueryPlan explainMonthlyExpenses(int userId, YearMonth from, YearMonth to) {
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + MONTHLY_EXPENSES_SQL)) {
+            
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, toMonthKey(from));
+            pstmt.setInt(3, toMonthKey(to));
+            ResultSet rs = pstmt.executeQuery();
+            
+            if (rs.next()) {
+                return new QueryPlan(rs.getString("type"), rs.getString("key"),
+                                     rs.getLong("rows"), rs.getString("Extra"));
+            }
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Check that the monthly expenses query is answered by an index range scan
+     * 
+     * @param userId User's ID
+     * @param from First month of the window
+     * @param to Last month of the window
+     * @return true if MySQL plans a range access on the rollup primary key
+     */
+    public boolean verifyMonthlyExpensesPlan(int userId, YearMonth from, YearMonth to) {
+        QueryPlan plan = explainMonthlyExpenses(userId, from, to);
+        return plan != null && plan.isRangeScanOf(MONTH_INDEX);
+    }
+    
+    /**
+     * Convert a month to its month_key value (yyyymm)
+     */
+    static int toMonthKey(YearMonth month) {
+        return month.getYear() * 100 + month.getMonthValue();
+    }
+    
+    /**
+     * Format a month_key value (yyyymm) as yyyy-MM
+     */
+    static String formatMonthKey(int monthKey) {
+        int month = monthKey % 100;
+        return (monthKey / 100) + (month < 10 ? "-0" : "-") + month;
+    }
+    
+    /**
+     * Load everything the dashboard shows in one round trip
+     * 
+     * Totals, the category breakdown, the monthly trend and the recent
+     * transactions come back as sections of one UNION ALL statement, so
+     * they share one consistent read and need no multi-statement support
+     * from the driver.
+     * 
+     * @param userId User's ID
+     * @param recentLimit Number of recent transactions to include
+     * @return Snapshot of totals, breakdowns and recent activity
+     */
+    public DashboardSnapshot getDashboardSnapshot(int userId, int recentLimit) {
+        long income = 0L;
+        long expenses = 0L;
+        Map<Integer, Long> categoryTotals = new LinkedHashMap<>();
+        Map<String, Long> monthlyExpenses = new LinkedHashMap<>();
+        List<Transaction> recent = new ArrayList<>();
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DASHBOARD_SQL)) {
+            
+            YearMonth current = YearMonth.now();
+            pstmt.setInt(1, userId);
+            pstmt.setInt(2, userId);
+            pstmt.setInt(3, userId);
+            pstmt.setInt(4, toMonthKey(current.minusMonths(TREND_MONTHS - 1)));
+            pstmt.setInt(5, toMonthKey(current));
+            pstmt.setInt(6, userId);
+            pstmt.setInt(7, recentLimit);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                switch (rs.getInt("part")) {
+                    case 1:
+                        if (rs.getInt("type_code") == TransactionType.INCOME.getCode()) {
+                            income = Money.fromDecimal(rs.getBigDecimal("total"));
+                        } else {
+                            expenses = Money.fromDecimal(rs.getBigDecimal("total"));
+                        }
+                        break;
+                    case 2:
+                        categoryTotals.put(rs.getInt("category_id"), Money.fromDecimal(rs.getBigDecimal("total")));
+                        break;
+                    case 3:
+                        monthlyExpenses.put(formatMonthKey(rs.getInt("month_key")),
+                                            Money.fromDecimal(rs.getBigDecimal("total")));
+                        break;
+                    default:
+                        recent.add(mapTransaction(rs));
+                }
+            }
+            
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        
+        // Names are resolved after the connection is released
+        Set<Integer> categoryIds = new HashSet<>(categoryTotals.keySet());
+        for (Transaction t : recent) {
+            categoryIds.add(t.getCategoryId());
+        }
+        resolveCategoryNames(categoryIds);
+        Map<String, Long> expensesByCategory = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Long> entry : categoryTotals.entrySet()) {
+            expensesByCategory.put(getCategoryName(entry.getKey()), entry.getValue());
+        }
+        
+        return new DashboardSnapshot(income, expenses, expensesByCategory, monthlyExpenses, recent);
+    }
+    
+    /**
+     * Export transactions to CSV file
+     * 
+     * Rows are streamed from the cursor as integers and text and written
+     * through a CsvWriter, so no Transaction objects are built and memory
+     * use does not grow with the number of rows.
+     * 
+     * @param userId User's ID
+     * @param filePath Path to save CSV file
+     * @return true if successful, false otherwise
+     */
+    public boolean exportToCSV(int userId, String filePath) {
+        try (CsvWriter writer = new CsvWriter(Paths.get(filePath))) {
+            resolveCategoryNames(queryCategoryIds(userId));
+            writeCsvHeader(writer);
+            writeCsvRows(userId, null, null, writer);
+            return true;
+            
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Write the CSV export's header record
+     */
+    static void writeCsvHeader(CsvWriter writer) throws IOException {
+        writer.field("Date").field("Type").field("Category").field("Description").field("Amount").endRecord();
+    }
+    
+    /**
+     * Write a user's transactions as CSV records, newest first
+     * 
+     * Category names come from the dictionary; resolve the user's
+     * category ids once before writing.
+     * 
+     * @param userId User's ID
+     * @param from First date, inclusive, or null for no lower bound
+     * @param to Last date, inclusive, or null for no upper bound
+     * @param writer Destination
+     */
+    void writeCsvRows(int userId, LocalDate from, LocalDate to, CsvWriter writer) throws SQLException, IOException {
+        // Types and categories repeat on every row, so encode each once
+        byte[][] typeFields = new byte[TransactionType.values().length][];
+        for (TransactionType type : TransactionType.values()) {
+            typeFields[type.ordinal()] = CsvWriter.encodeField(type.getLabel());
+        }
+        Map<Integer, byte[]> categoryFields = new HashMap<>();
+        
+        forEachExportRow(userId, from, to, (epochDay, type, categoryId, description, amountMinor) ->
+            writer.dateField(epochDay)
+                  .field(typeFields[type.ordinal()])
+                  .field(categoryFields.computeIfAbsent(categoryId,
+                      id -> CsvWriter.encodeField(getCategoryName(id))))
+                  .field(description)
+                  .amountField(amountMinor)
+                  .endRecord()
+        );
+    }
+    
+    /**
+     * Get the distinct category ids of a user's transactions
+     * 
+     * Read from the (user_id, type_code, category_id, ...) index.
+     */
+    Set<Integer> queryCategoryIds(int userId) throws SQLException {
+        String sql = "SELECT DISTINCT category_id FROM transactions WHERE user_id = ?";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            Set<Integer> ids = new HashSet<>();
+            while (rs.next()) {
+                ids.add(rs.getInt("category_id"));
+            }
+            return ids;
+        }
+    }
+    
+    /**
+     * Count a user's transactions per day, newest day first
+     * 
+     * Read from the (user_id, date, ...) index; one row per day with
+     * transactions.
+     * 
+     * @param userId User's ID
+     * @return [epoch day, count] pairs, empty if the user has no transactions
+     */
+    List<long[]> queryDailyCounts(int userId) throws SQLException {
+        String sql = "SELECT TO_DAYS(date) - TO_DAYS('1970-01-01') AS epoch_day, COUNT(*) AS row_count " +
+                     "FROM transactions WHERE user_id = ? GROUP BY date ORDER BY date DESC";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            
+            pstmt.setInt(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+            
+            List<long[]> counts = new ArrayList<>();
+            while (rs.next()) {
+                counts.add(new long[] { rs.getLong("epoch_day"), rs.getLong("row_count") });
+            }
+            return counts;
+        }
+    }
+    
+    /**
+     * Export transactions to an Excel workbook
+     * 
+     * Rows are streamed from the cursor into an XlsxWriter with constant
+     * memory. Types and categories are shared strings, amounts are numeric
+     * cells and dates are date cells.
+     * 
+     * @param userId User's ID
+     * @param filePath Path to save Excel file
+     * @return true if successful, false otherwise
+     */
+    public boolean exportToExcel(int userId, String filePath) {
+        try (XlsxWriter writer = new XlsxWriter(Paths.get(filePath), "Transactions", 12, 10, 16, 40, 12)) {
+            writer.headerRow("Date", "Type", "Category", "Description", "Amount");
+            resolveCategoryNames(queryCategoryIds(userId));
+            
+            forEachExportRow(userId, null, null, (epochDay, type, categoryId, description, amountMinor) ->
+                writer.startRow()
+                      .dateCell(epochDay)
+                      .sharedStringCell(type.getLabel())
+                      .sharedStringCell(getCategoryName(categoryId))
+                      .inlineStringCell(description)
+                      .amountCell(amountMinor)
+            );
+            return true;
+            
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Receives one transaction row from forEachExportRow
+     */
+    interface ExportRowConsumer {
+        void accept(int epochDay, TransactionType type, int categoryId, String description,
+                    long amountMinor) throws IOException;
+    }
+    
+    /**
+     * Stream a user's transactions for export or duplicate checks, newest first
+     * 
+     * Dates and amounts arrive as integers (days since the epoch and minor
+     * units), so no Transaction, LocalDate or BigDecimal is built per row.
+     * 
+     * @param from First date, inclusive, or null for no lower bound
+     * @param to Last date, inclusive, or null for no upper bound
+     */
+    void forEachExportRow(int userId, LocalDate from, LocalDate to, ExportRowConsumer consumer)
+            throws SQLException, IOException {
+        String sql = "SELECT TO_DAYS(date) - TO_DAYS('1970-01-01') AS epoch_day, type_code, category_id, " +
+                     "description, CAST(amount * 100 AS SIGNED) AS amount_minor " +
+                     "FROM transactions WHERE user_id = ?" +
+                     (from != null ? " AND date >= ?" : "") +
+                     (to != null ? " AND date <= ?" : "") +
+                     " ORDER BY date DESC, id DESC";
+        
+        try (Connection conn = pool.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                                                              ResultSet.CONCUR_READ_ONLY)) {
+            
+            pstmt.setFetchSize(STREAMING_FETCH_SIZE);
+            int param = 1;
+            pstmt.setInt(param++, userId);
+            if (from != null) {
+                pstmt.setDate(param++, java.sql.Date.valueOf(from));
+            }
+            if (to != null) {
+                pstmt.setDate(param, java.sql.Date.valueOf(to));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(
+                        rs.getInt("epoch_day"),
+                        TransactionType.fromCode(rs.getInt("type_code")),
+                        rs.getInt("category_id"),
+                        rs.getString("description"),
+                        rs.getLong("amount_minor")
+                    );
+                }
+            }
+        }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// AGGREGATE CACHE CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Point-in-time view of aggregate cache activity
+ */
+class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int cachedUsers;
+    
+    public CacheStats(long hits, long misses, long evictions, long invalidations, int cachedUsers) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.cachedUsers = cachedUsers;
+    }
+    
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public long getInvalidations() { return invalidations; }
+    public int getCachedUsers() { return cachedUsers; }
+    
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("CacheStats[hits=%d, misses=%d, hitRate=%.1f%%, evictions=%d, " +
+                             "invalidations=%d, users=%d]",
+                             hits, misses, getHitRate() * 100, evictions, invalidations, cachedUsers);
+    }
+}
+
+/**
+ * Per-user cache of aggregate query results
+ * 
+ * Every user carries a version counter per transaction type. A cached
+ * value remembers the type it was computed from and that type's version
+ * at load time; writing a transaction bumps the version of its type, so
+ * only the aggregates that depend on it are reloaded (a new expense does
+ * not evict the income total). Users are kept in LRU order and the least
+ * recently used user is evicted once maxUsers is exceeded.
+ */
+class AggregateCache {
+    /**
+     * Query that produces a cacheable value
+     */
+    interface Loader<T> {
+        T load() throws SQLException;
+    }
+    
+    private final int maxUsers;
+    private final LinkedHashMap<Integer, UserAggregates> users;
+    
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+    
+    public AggregateCache(int maxUsers) {
+        this.maxUsers = maxUsers;
+        this.users = new LinkedHashMap<Integer, UserAggregates>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UserAggregates> eldest) {
+                if (size() > AggregateCache.this.maxUsers) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Return a cached value, loading it on a miss
+     * 
+     * The loader runs outside the cache lock. If a write for the same
+     * type lands while it runs, the result is returned but not cached.
+     * 
+     * @param userId User the value belongs to
+     * @param key Name of the aggregate, including any parameters
+     * @param type Transaction type the aggregate is computed from
+     * @param loader Database query producing the value
+     * @param fallback Value returned (and not cached) if the query fails
+     * @return Cached or freshly loaded value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(int userId, String key, TransactionType type, Loader<T> loader, T fallback) {
+        UserAggregates user;
+        long version;
+        synchronized (this) {
+            user = users.computeIfAbsent(userId, id -> new UserAggregates());
+            CachedValue cached = user.values.get(key);
+            version = user.version(type);
+            if (cached != null && cached.version == version) {
+                hits++;
+                return (T) cached.value;
+            }
+            misses++;
+        }
+        
+        T value;
+        try {
+            value = loader.load();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return fallback;
+        }
+        
+        synchronized (this) {
+            // Skip the store if the user was evicted or written to meanwhile
+            if (users.get(userId) == user && user.version(type) == version) {
+                user.values.put(key, new CachedValue(version, value));
+            }
+        }
+        return value;
+    }
+    
+    /**
+     * Invalidate a user's aggregates derived from one transaction type
+     * 
+     * @param userId User whose data changed
+     * @param type Type of the written transactions
+     */
+    public synchronized void invalidate(int userId, TransactionType type) {
+        UserAggregates user = users.get(userId);
+        if (user != null) {
+            user.versions[type.ordinal()]++;
+            invalidations++;
+        }
+    }
+    
+    /**
+     * Drop everything cached for a user
+     */
+    public synchronized void invalidateUser(int userId) {
+        if (users.remove(userId) != null) {
+            invalidations++;
+        }
+    }
+    
+    /**
+     * Drop everything cached for all users
+     */
+    public synchronized void clear() {
+        invalidations += users.size();
+        users.clear();
+    }
+    
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, invalidations, users.size());
+    }
+    
+    /**
+     * Cached aggregates and type versions of one user
+     */
+    private static final class UserAggregates {
+        private final long[] versions = new long[TransactionType.values().length];
+        private final Map<String, CachedValue> values = new HashMap<>();
+        
+        long version(TransactionType type) {
+            return versions[type.ordinal()];
+        }
+    }
+    
+    private static final class CachedValue {
+        private final long version;
+        private final Object value;
+        
+        CachedValue(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// AGGREGATION ENGINE CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Notified by DatabaseManager after transactions are committed
+ */
+interface TransactionListener {
+    /**
+     * @param added Newly committed transactions, with their generated ids set
+     */
+    void onTransactionsAdded(List<Transaction> added);
+}
+
+/**
+ * In-memory running totals for one user
+ * 
+ * Loads the user's sums once from monthly_rollups and then applies each
+ * committed transaction as a delta, so dashboard reads never touch the
+ * database. All sums are long minor units (pence). A background task
+ * periodically re-aggregates the raw transactions table and replaces the
+ * in-memory state if it has drifted.
+ * 
+ * Loads run without holding the engine's lock. Each load is checked
+ * against the user's write epoch, so totals read while a write was in
+ * flight, whose rows listeners may still report, are discarded instead of
+ * installed.
+ */
+class AggregationEngine implements TransactionListener, AutoCloseable {
+    private static final long RECONCILE_INTERVAL_MINUTES = 5;
+    private static final int LOAD_ATTEMPTS = 3;
+    
+    private final DatabaseManager db;
+    private final int userId;
+    private final ScheduledExecutorService reconciler;
+    
+    private Totals totals = new Totals();
+    private boolean started;
+    private boolean listening;
+    
+    public AggregationEngine(DatabaseManager db, int userId) {
+        this.db = db;
+        this.userId = userId;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fiscalforge-reconciler");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**
+     * Load the user's totals and start applying new transactions
+     * 
+     * Does nothing if the engine is already running. Gives up if a write
+     * for the user is in flight or every attempt to load races one, so the
+     * caller can fall back to querying the database.
+     * 
+     * @return true if the engine is running
+     */
+    public boolean start() {
+        synchronized (this) {
+            if (started) {
+                return true;
+            }
+            // Register before loading so no commit after the load is missed
+            if (!listening) {
+                db.addTransactionListener(this);
+                listening = true;
+            }
+        }
+        
+        for (int attempt = 0; attempt < LOAD_ATTEMPTS; attempt++) {
+            long epoch = db.writeEpoch(userId);
+            if (epoch < 0) {
+                return false;
+            }
+            
+            Totals loaded = load(false);
+            if (loaded == null) {
+                return false;
+            }
+            
+            synchronized (this) {
+                if (started) {
+                    return true;
+                }
+                // Checked under the lock, so any later write is notified after
+                // the install and counted exactly once
+                if (db.writeEpoch(userId) == epoch) {
+                    totals = loaded;
+                    started = true;
+                    reconciler.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL_MINUTES,
+                                                      RECONCILE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public synchronized void onTransactionsAdded(List<Transaction> added) {
+        for (Transaction t : added) {
+            if (t.getUserId() != userId) {
+                continue;
+            }
+            if (started) {
+                totals.add(t.getType(),
+                           DatabaseManager.toMonthKey(YearMonth.from(t.getDate())),
+                           t.getCategoryId(),
+                           t.getAmountMinor());
+            }
+        }
+    }
+    
+    /**
+     * Compare the in-memory totals against the transactions table
+     * 
+     * The check is skipped if a write for the user was in flight while the
+     * database was being read, since the two views would not line up.
+     */
+    void reconcile() {
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+        }
+        long epoch = db.writeEpoch(userId);
+        if (epoch < 0) {
+            return;
+        }
+        
+        Totals fresh = load(true);
+        if (fresh == null) {
+            return;
+        }
+        
+        synchronized (this) {
+            if (db.writeEpoch(userId) != epoch) {
+                return;
+            }
+            if (!totals.sameAs(fresh)) {
+                System.err.println("Aggregation drift detected for user " + userId +
+                                   "; reloading totals from the database");
+                totals = fresh;
+            }
+        }
+    }
+    
+    /**
+     * Read the user's sums and resolve their category names
+     * 
+     * @param fromTransactions Aggregate the raw rows instead of the rollups
+     * @return Totals, or null on database error
+     */
+    private Totals load(boolean fromTransactions) {
+        Totals loaded = new Totals();
+        if (!db.forEachMonthlyBucket(userId, fromTransactions, loaded::add)) {
+            return null;
+        }
+        db.resolveCategoryNames(loaded.byCategory.keySet());
+        return loaded;
+    }
+    
+    public synchronized long getTotalIncomeMinor() { return totals.incomeMinor; }
+    public synchronized long getTotalExpensesMinor() { return totals.expenseMinor; }
+    
+    /**
+     * Build the dashboard data from the in-memory counters
+     * 
+     * @param recentTransactions Recent activity loaded separately
+     * @return Snapshot with totals, the category breakdown (largest first)
+     *         and the last 12 months of expenses
+     */
+    public synchronized DashboardSnapshot snapshot(List<Transaction> recentTransactions) {
+        List<Map.Entry<Integer, long[]>> categories = new ArrayList<>(totals.byCategory.entrySet());
+        categories.sort((a, b) -> Long.compare(b.getValue()[Totals.EXPENSE], a.getValue()[Totals.EXPENSE]));
+        Map<String, Long> expensesByCategory = new LinkedHashMap<>();
+        for (Map.Entry<Integer, long[]> entry : categories) {
+            if (entry.getValue()[Totals.EXPENSE] != 0) {
+                expensesByCategory.put(db.getCategoryName(entry.getKey()), entry.getValue()[Totals.EXPENSE]);
+            }
+        }
+        
+        YearMonth current = YearMonth.now();
+        Map<String, Long> monthlyExpenses = new LinkedHashMap<>();
+        for (Map.Entry<Integer, long[]> entry : totals.byMonth.subMap(
+                DatabaseManager.toMonthKey(current.minusMonths(11)), true,
+                DatabaseManager.toMonthKey(current), true).entrySet()) {
+            if (entry.getValue()[Totals.EXPENSE] != 0) {
+                monthlyExpenses.put(DatabaseManager.formatMonthKey(entry.getKey()),
+                                    entry.getValue()[Totals.EXPENSE]);
+            }
+        }
+        
+        return new DashboardSnapshot(
+            totals.incomeMinor,
+            totals.expenseMinor,
+            expensesByCategory,
+            monthlyExpenses,
+            recentTransactions
+        );
+    }
+    
+    /**
+     * Stop reconciling and ignore further transactions
+     */
+    @Override
+    public void close() {
+        db.removeTransactionListener(this);
+        reconciler.shutdownNow();
+    }
+    
+    /**
+     * Sums per type, per category and per month
+     * 
+     * Category and month buckets hold a two-slot long[] indexed by
+     * INCOME/EXPENSE, updated in place so applying a delta never boxes.
+     */
+    private static final class Totals {
+        static final int INCOME = 0;
+        static final int EXPENSE = 1;
+        
+        long incomeMinor;
+        long expenseMinor;
+        final Map<Integer, long[]> byCategory = new HashMap<>();
+        final TreeMap<Integer, long[]> byMonth = new TreeMap<>();
+        
+        void add(TransactionType type, int monthKey, int categoryId, long minor) {
+            int slot;
+            if (type == TransactionType.INCOME) {
+                slot = INCOME;
+                incomeMinor = Money.add(incomeMinor, minor);
+            } else if (type == TransactionType.EXPENSE) {
+                slot = EXPENSE;
+                expenseMinor = Money.add(expenseMinor, minor);
+            } else {
+                return;
+            }
+            byCategory.computeIfAbsent(categoryId, c -> new long[2])[slot] += minor;
+            byMonth.computeIfAbsent(monthKey, m -> new long[2])[slot] += minor;
+        }
+        
+        boolean sameAs(Totals other) {
+            return incomeMinor == other.incomeMinor
+                && expenseMinor == other.expenseMinor
+                && sameBuckets(byCategory, other.byCategory)
+                && sameBuckets(byMonth, other.byMonth);
+        }
+        
+        private static <K> boolean sameBuckets(Map<K, long[]> a, Map<K, long[]> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (Map.Entry<K, long[]> entry : a.entrySet()) {
+                if (!Arrays.equals(entry.getValue(), b.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// TRANSACTION STORE CLASS
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Column-oriented, appendable copy of one user's transactions
+ * 
+ * Each field lives in its own primitive array (struct of arrays), so the
+ * analytics scans below are plain counted loops over contiguous memory
+ * that the JIT can unroll and vectorize, instead of pointer chasing
+ * through Transaction, LocalDate and String objects. Descriptions are
+ * kept UTF-8 encoded in one shared byte pool addressed by row offsets;
+ * a null description is stored as an empty one.
+ * 
+ * Appends are not thread-safe. Once loading has finished, any number of
+ * threads may scan the store concurrently.
+ */
+final class TransactionStore {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_DESCRIPTION_BYTES = 24;
+    
+    private int size;
+    private int[] epochDay;
+    private byte[] type;
+    private short[] categoryId;
+    private long[] amountCents;
+    // Row i's description spans [descriptionOffset[i], descriptionOffset[i + 1])
+    private int[] descriptionOffset;
+    private byte[] descriptionPool;
+    private int maxCategoryId;
+    
+    public TransactionStore() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity Number of rows to allocate up front
+     */
+    public TransactionStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        epochDay = new int[capacity];
+        type = new byte[capacity];
+        categoryId = new short[capacity];
+        amountCents = new long[capacity];
+        descriptionOffset = new int[capacity + 1];
+        descriptionPool = new byte[capacity * DEFAULT_DESCRIPTION_BYTES];
+    }
+    
+    /**
+     * Append one row
+     * 
+     * @param epochDay Date as days since 1970-01-01
+     * @param type Transaction type
+     * @param categoryId Category id from the categories table
+     * @param amountCents Amount in minor units
+     * @param description Free text, may be null
+     */
+    public void append(int epochDay, TransactionType type, int categoryId, long amountCents, String description) {
+        if (categoryId < 0 || categoryId > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Category id out of range: " + categoryId);
+        }
+        ensureCapacity(size + 1);
+        this.epochDay[size] = epochDay;
+        this.type[size] = (byte) type.getCode();
+        this.categoryId[size] = (short) categoryId;
+        this.amountCents[size] = amountCents;
+        maxCategoryId = Math.max(maxCategoryId, categoryId);
+        
+        int start = descriptionOffset[size];
+        int end = start;
+        if (description != null && !description.isEmpty()) {
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            end = start + bytes.length;
+            ensurePoolCapacity(end);
+            System.arraycopy(bytes, 0, descriptionPool, start, bytes.length);
+        }
+        descriptionOffset[size + 1] = end;
+        size++;
+    }
+    
+    /**
+     * Append a transaction's fields
+     */
+    public void append(Transaction t) {
+        append((int) t.getDate().toEpochDay(), t.getType(), t.getCategoryId(),
+               t.getAmountMinor(), t.getDescription());
+    }
+    
+    public int size() { return size; }
+    public int getEpochDay(int row) { return epochDay[checkRow(row)]; }
+    public LocalDate getDate(int row) { return LocalDate.ofEpochDay(epochDay[checkRow(row)]); }
+    public TransactionType getType(int row) { return TransactionType.fromCode(type[checkRow(row)]); }
+    public int getCategoryId(int row) { return categoryId[checkRow(row)]; }
+    public long getAmountCents(int row) { return amountCents[checkRow(row)]; }
+    
+    public String getDescription(int row) {
+        checkRow(row);
+        int start = descriptionOffset[row];
+        return new String(descriptionPool, start, descriptionOffset[row + 1] - start, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Sum the amounts of one transaction type
+     * 
+     * @return Total in minor units
+     */
+    public long total(TransactionType t) {
+        return total(t, 0, size);
+    }
+    
+    /**
+     * Sum the amounts of one transaction type over rows [from, to)
+     */
+    long total(TransactionType t, int from, int to) {
+        checkRange(from, to);
+        byte code = (byte) t.getCode();
+        byte[] types = type;
+        long[] amounts = amountCents;
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += types[i] == code ? amounts[i] : 0L;
+        }
+        return sum;
+    }
+    
+    /**
+     * Sum one transaction type per category
+     * 
+     * @return Totals in minor units indexed by category id; ids without
+     *         rows hold 0
+     */
+    public long[] totalsByCategory(TransactionType t) {
+        return totalsByCategory(t, 0, size);
+    }
+    
+    /**
+     * Sum one transaction type per category over rows [from, to)
+     */
+    long[] totalsByCategory(TransactionType t, int from, int to) {
+        checkRange(from, to);
+        byte code = (byte) t.getCode();
+        byte[] types = type;
+        short[] categories = categoryId;
+        long[] amounts = amountCents;
+        long[] totals = new long[maxCategoryId + 1];
+        for (int i = from; i < to; i++) {
+            if (types[i] == code) {
+                totals[categories[i]] += amounts[i];
+            }
+        }
+        return totals;
+    }
+    
+    /**
+     * Sum one transaction type per month
+     * 
+     * @param first First month to include
+     * @param last Last month to include
+     * @return Totals in minor units; index 0 is the first month
+     */
+    public long[] totalsByMonth(TransactionType t, YearMonth first, YearMonth last) {
+        return totalsByMonth(t, first, last, 0, size);
+    }
+    
+    /**
+     * Sum one transaction type per month over rows [from, to)
+     */
+    long[] totalsByMonth(TransactionType t, YearMonth first, YearMonth last, int from, int to) {
+        checkRange(from, to);
+        int months = monthCount(first, last);
+        if (months == 0) {
+            return new long[0];
+        }
+        
+        int firstDay = (int) first.atDay(1).toEpochDay();
+        int[] monthOfDay = monthOfDayTable(first, last);
+        int span = monthOfDay.length;
+        
+        byte code = (byte) t.getCode();
+        byte[] types = type;
+        int[] days = epochDay;
+        long[] amounts = amountCents;
+        long[] totals = new long[months];
+        for (int i = from; i < to; i++) {
+            int offset = days[i] - firstDay;
+            if (types[i] == code && offset >= 0 && offset < span) {
+                totals[monthOfDay[offset]] += amounts[i];
+            }
+        }
+        return totals;
+    }
+    
+    /**
+     * Add rows [from, to) to a summary in a single pass
+     * 
+     * @param firstDay Epoch day of the first day of the summary's window
+     * @param monthOfDay Table from monthOfDayTable() for that window
+     * @param into Summary to accumulate into
+     */
+    void summarize(int from, int to, int firstDay, int[] monthOfDay, AnalyticsSummary into) {
+        checkRange(from, to);
+        into.ensureCategory(maxCategoryId);
+        byte income = (byte) TransactionType.INCOME.getCode();
+        byte[] types = type;
+        short[] categories = categoryId;
+        int[] days = epochDay;
+        long[] amounts = amountCents;
+        long[] byCategory = into.expensesByCategory;
+        long[] byMonth = into.expensesByMonth;
+        int span = monthOfDay.length;
+        long incomeSum = 0;
+        long expenseSum = 0;
+        
+        for (int i = from; i < to; i++) {
+            long amount = amounts[i];
+            if (types[i] == income) {
+                incomeSum += amount;
+            } else {
+                expenseSum += amount;
+                byCategory[categories[i]] += amount;
+                int offset = days[i] - firstDay;
+                if (offset >= 0 && offset < span) {
+                    byMonth[monthOfDay[offset]] += amount;
+                }
+            }
+        }
+        
+        into.incomeMinor += incomeSum;
+        into.expenseMinor += expenseSum;
+        into.rowCount += to - from;
+    }
+    
+    /**
+     * @return Number of months from first to last inclusive, 0 if last is before first
+     */
+    static int monthCount(YearMonth first, YearMonth last) {
+        return (int) Math.max(first.until(last, ChronoUnit.MONTHS) + 1, 0);
+    }
+    
+    /**
+     * Map each day of a window of months to its month index
+     * 
+     * Built once per scan so the row loop is a subtraction and a table
+     * lookup instead of calendar arithmetic.
+     * 
+     * @return Table indexed by days since the first day of the first month
+     */
+    static int[] monthOfDayTable(YearMonth first, YearMonth last) {
+        int months = monthCount(first, last);
+        if (months == 0) {
+            return new int[0];
+        }
+        int[] monthOfDay = new int[(int) (last.atEndOfMonth().toEpochDay() - first.atDay(1).toEpochDay() + 1)];
+        int day = 0;
+        for (int m = 0; m < months; m++) {
+            int length = first.plusMonths(m).lengthOfMonth();
+            Arrays.fill(monthOfDay, day, day + length, m);
+            day += length;
+        }
+        return monthOfDay;
+    }
+    
+    /**
+     * Release unused capacity after loading
+     */
+    public void trimToSize() {
+        resize(size);
+        descriptionPool = Arrays.copyOf(descriptionPool, descriptionOffset[size]);
+    }
+    
+    /**
+     * Estimate the heap used by this store, including unused capacity
+     * 
+     * Assumes a 64-bit JVM with compressed references (16-byte array headers).
+     * 
+     * @return Approximate size in bytes
+     */
+    public long estimatedBytes() {
+        long arrays = 16L * 6;
+        return 48 + arrays
+             + 4L * epochDay.length
+             + type.length
+             + 2L * categoryId.length
+             + 8L * amountCents.length
+             + 4L * descriptionOffset.length
+             + descriptionPool.length;
+    }
+    
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+    
+    private void checkRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Rows [" + from + ", " + to + ") of " + size);
+        }
+    }
+    
+    private void ensureCapacity(int rows) {
+        if (rows > epochDay.length) {
+            resize(Math.max(rows, epochDay.length + (epochDay.length >> 1)));
+        }
+    }
+    
+    private void resize(int capacity) {
+        capacity = Math.max(capacity, 1);
+        epochDay = Arrays.copyOf(epochDay, capacity);
+        type = Arrays.copyOf(type, capacity);
+        categoryId = Arrays.copyOf(categoryId, capacity);
+        amountCents = Arrays.copyOf(amountCents, capacity);
+        descriptionOffset = Arrays.copyOf(descriptionOffset, capacity + 1);
+    }
+    
+    private void ensurePoolCapacity(int bytes) {
+        if (bytes > descriptionPool.length) {
+            descriptionPool = Arrays.copyOf(descriptionPool,
+                                            Math.max(bytes, descriptionPool.length + (descriptionPool.length >> 1)));
+        }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// DATE RANGE INDEX CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Income and expense totals over a date range, in minor units
+ */
+class RangeTotals {
+    private final long incomeMinor;
+    private final long expenseMinor;
+    
+    public RangeTotals(long incomeMinor, long expenseMinor) {
+        this.incomeMinor = incomeMinor;
+        this.expenseMinor = expenseMinor;
+    }
+    
+    public long getIncome() { return incomeMinor; }
+    public long getExpenses() { return expenseMinor; }
+    public long getBalance() { return Math.subtractExact(incomeMinor, expenseMinor); }
+}
+
+/**
+ * Prefix-sum index answering "total between two dates" for one user
+ * 
+ * Keeps a Fenwick (binary indexed) tree over a dense range of epoch days
+ * for each transaction type, plus one per (type, category). Adding an
+ * amount and summing any date range are both O(log days). The day range
+ * starts at the first date added and doubles when a later or earlier
+ * date arrives, so a tree costs 8 bytes per covered day. Trees only cover
+ * the last hundred years and the next ten; amounts dated outside that
+ * window are kept in a sorted map and summed by scanning it, so one
+ * mistyped year cannot inflate every tree.
+ * 
+ * All methods are synchronized; appends come from the committing thread
+ * while queries may come from any thread.
+ */
+final class DateRangeIndex {
+    private static final int MIN_SPAN_DAYS = 366;
+    private static final int DENSE_YEARS_BACK = 100;
+    private static final int DENSE_YEARS_AHEAD = 10;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    
+    // Only days in [denseFrom, denseTo] are laid out in the trees
+    private final int denseFrom;
+    private final int denseTo;
+    private int firstDay;
+    private int span; // Days covered; trees have span + 1 slots, slot 0 unused
+    private final long[][] byType = new long[TYPES.length][];
+    private final long[][][] byCategory = new long[TYPES.length][0][];
+    // Amounts on days outside the dense window, e.g. mistyped years, as
+    // {type ordinal, category id, amount} per day; summed by scanning
+    private final TreeMap<Integer, List<long[]>> outliers = new TreeMap<>();
+    
+    public DateRangeIndex() {
+        LocalDate today = LocalDate.now();
+        this.denseFrom = (int) today.minusYears(DENSE_YEARS_BACK).toEpochDay();
+        this.denseTo = (int) today.plusYears(DENSE_YEARS_AHEAD).toEpochDay();
+    }
+    
+    /**
+     * Add a transaction's amount on its date
+     */
+    public synchronized void add(Transaction t) {
+        add((int) t.getDate().toEpochDay(), t.getType(), t.getCategoryId(), t.getAmountMinor());
+    }
+    
+    /**
+     * Add an amount on a day
+     * 
+     * @param epochDay Days since 1970-01-01
+     * @param type Transaction type
+     * @param categoryId Category id
+     * @param amountMinor Amount in minor units
+     */
+    public synchronized void add(int epochDay, TransactionType type, int categoryId, long amountMinor) {
+        if (epochDay < denseFrom || epochDay > denseTo) {
+            addOutlier(epochDay, type, categoryId, amountMinor);
+            return;
+        }
+        if (span == 0) {
+            firstDay = epochDay;
+            span = MIN_SPAN_DAYS;
+            for (int t = 0; t < TYPES.length; t++) {
+                byType[t] = new long[span + 1];
+            }
+        } else if (epochDay < firstDay || epochDay >= firstDay + span) {
+            grow(epochDay);
+        }
+        
+        int slot = epochDay - firstDay + 1;
+        int t = type.ordinal();
+        addAt(byType[t], slot, amountMinor);
+        
+        long[][] categories = byCategory[t];
+        if (categoryId >= categories.length) {
+            categories = byCategory[t] = Arrays.copyOf(categories, categoryId + 1);
+        }
+        if (categories[categoryId] == null) {
+            categories[categoryId] = new long[span + 1];
+        }
+        addAt(categories[categoryId], slot, amountMinor);
+    }
+    
+    /**
+     * Sum one type between two dates, inclusive
+     * 
+     * @param categoryId Category to restrict to, or null for all categories
+     * @return Total in minor units
+     */
+    public synchronized long sum(TransactionType type, LocalDate from, LocalDate to, Integer categoryId) {
+        long outlierSum = sumOutliers(type, from, to, categoryId);
+        if (span == 0) {
+            return outlierSum;
+        }
+        
+        long[] tree;
+        if (categoryId == null) {
+            tree = byType[type.ordinal()];
+        } else {
+            long[][] categories = byCategory[type.ordinal()];
+            tree = categoryId >= 0 && categoryId < categories.length ? categories[categoryId] : null;
+            if (tree == null) {
+                return outlierSum;
+            }
+        }
+        
+        // Clamp to the covered days; slots are 1-based
+        long lo = Math.max(from.toEpochDay() - firstDay + 1, 1);
+        long hi = Math.min(to.toEpochDay() - firstDay + 1, span);
+        if (lo > hi) {
+            return outlierSum;
+        }
+        return outlierSum + prefix(tree, (int) hi) - prefix(tree, (int) lo - 1);
+    }
+    
+    /**
+     * Income and expense between two dates, inclusive
+     * 
+     * @param categoryId Category to restrict to, or null for all categories
+     */
+    public synchronized RangeTotals totals(LocalDate from, LocalDate to, Integer categoryId) {
+        return new RangeTotals(sum(TransactionType.INCOME, from, to, categoryId),
+                               sum(TransactionType.EXPENSE, from, to, categoryId));
+    }
+    
+    /**
+     * Estimate the heap used by the trees
+     * 
+     * @return Approximate size in bytes
+     */
+    public synchronized long estimatedBytes() {
+        long trees = 0;
+        for (int t = 0; t < TYPES.length; t++) {
+            trees += byType[t] == null ? 0 : 1;
+            for (long[] tree : byCategory[t]) {
+                trees += tree == null ? 0 : 1;
+            }
+        }
+        long outlierEntries = 0;
+        for (List<long[]> day : outliers.values()) {
+            outlierEntries += day.size();
+        }
+        return trees * (16 + 8L * (span + 1)) + outlierEntries * 64;
+    }
+    
+    private void addOutlier(int epochDay, TransactionType type, int categoryId, long amountMinor) {
+        List<long[]> day = outliers.computeIfAbsent(epochDay, d -> new ArrayList<>(1));
+        for (long[] entry : day) {
+            if (entry[0] == type.ordinal() && entry[1] == categoryId) {
+                entry[2] += amountMinor;
+                return;
+            }
+        }
+        day.add(new long[] { type.ordinal(), categoryId, amountMinor });
+    }
+    
+    private long sumOutliers(TransactionType type, LocalDate from, LocalDate to, Integer categoryId) {
+        if (outliers.isEmpty()) {
+            return 0L;
+        }
+        long lo = Math.max(from.toEpochDay(), Integer.MIN_VALUE);
+        long hi = Math.min(to.toEpochDay(), Integer.MAX_VALUE);
+        if (lo > hi) {
+            return 0L;
+        }
+        
+        long sum = 0;
+        for (List<long[]> day : outliers.subMap((int) lo, true, (int) hi, true).values()) {
+            for (long[] entry : day) {
+                if (entry[0] == type.ordinal() && (categoryId == null || entry[1] == categoryId)) {
+                    sum += entry[2];
+                }
+            }
+        }
+        return sum;
+    }
+    
+    /**
+     * Re-lay the trees over a range that also covers epochDay
+     */
+    private void grow(int epochDay) {
+        int lastDay = firstDay + span - 1;
+        int lo = Math.min(firstDay, epochDay);
+        int hi = Math.max(lastDay, epochDay);
+        int newSpan = Math.max(span * 2, hi - lo + 1);
+        // Put the extra room on the side the new day fell, but not past
+        // the dense window, so growth is bounded by its length
+        int newFirstDay = epochDay < firstDay ? hi - newSpan + 1 : lo;
+        int newLastDay = newFirstDay + newSpan - 1;
+        newFirstDay = Math.max(newFirstDay, Math.min(lo, denseFrom));
+        newLastDay = Math.min(newLastDay, Math.max(hi, denseTo));
+        newSpan = newLastDay - newFirstDay + 1;
+        int shift = firstDay - newFirstDay;
+        
+        for (int t = 0; t < TYPES.length; t++) {
+            byType[t] = relocate(byType[t], shift, newSpan);
+            long[][] categories = byCategory[t];
+            for (int c = 0; c < categories.length; c++) {
+                if (categories[c] != null) {
+                    categories[c] = relocate(categories[c], shift, newSpan);
+                }
+            }
+        }
+        firstDay = newFirstDay;
+        span = newSpan;
+    }
+    
+    /**
+     * Move a tree's values shift slots to the right in a larger tree, in O(n)
+     */
+    private static long[] relocate(long[] tree, int shift, int newSpan) {
+        int n = tree.length - 1;
+        // Undo the Fenwick build (in reverse) to recover per-day values
+        for (int i = n; i >= 1; i--) {
+            int parent = i + (i & -i);
+            if (parent <= n) {
+                tree[parent] -= tree[i];
+            }
+        }
+        long[] grown = new long[newSpan + 1];
+        System.arraycopy(tree, 1, grown, 1 + shift, n);
+        // Linear-time Fenwick build
+        for (int i = 1; i <= newSpan; i++) {
+            int parent = i + (i & -i);
+            if (parent <= newSpan) {
+                grown[parent] += grown[i];
+            }
+        }
+        return grown;
+    }
+    
+    private static void addAt(long[] tree, int slot, long amount) {
+        for (int i = slot; i < tree.length; i += i & -i) {
+            tree[i] += amount;
+        }
+    }
+    
+    private static long prefix(long[] tree, int slot) {
+        long sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// BUDGET CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * How often a budget's limit resets
+ * 
+ * Stored in budgets.period by label.
+ */
+enum BudgetPeriod {
+    MONTHLY("Monthly"),
+    YEARLY("Yearly");
+    
+    private final String label;
+    
+    BudgetPeriod(String label) {
+        this.label = label;
+    }
+    
+    public String getLabel() { return label; }
+    
+    /**
+     * @return First day of the period containing day
+     */
+    public LocalDate periodStart(LocalDate day) {
+        return this == MONTHLY ? day.withDayOfMonth(1) : day.withDayOfYear(1);
+    }
+    
+    /**
+     * @return Last day of the period containing day
+     */
+    public LocalDate periodEnd(LocalDate day) {
+        return this == MONTHLY ? YearMonth.from(day).atEndOfMonth() : day.withDayOfYear(day.lengthOfYear());
+    }
+    
+    /**
+     * @param label Value of a budgets.period column
+     * @return Matching period
+     * @throws IllegalArgumentException if the label is unknown
+     */
+    public static BudgetPeriod fromLabel(String label) {
+        for (BudgetPeriod period : values()) {
+            if (period.label.equalsIgnoreCase(label)) {
+                return period;
+            }
+        }
+        throw new IllegalArgumentException("Unknown budget period: " + label);
+    }
+    
+    @Override
+    public String toString() {
+        return label;
+    }
+}
+
+/**
+ * Spending limit for one category over a repeating period
+ */
+class Budget {
+    private int id;
+    private final int userId;
+    private final int categoryId;
+    private final long amountMinor;
+    private final BudgetPeriod period;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    
+    public Budget(int id, int userId, int categoryId, long amountMinor,
+                  BudgetPeriod period, LocalDate startDate, LocalDate endDate) {
+        this.id = id;
+        this.userId = userId;
+        this.categoryId = categoryId;
+        this.amountMinor = amountMinor;
+        this.period = period;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+    
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+    public int getUserId() { return userId; }
+    public int getCategoryId() { return categoryId; }
+    public long getAmountMinor() { return amountMinor; }
+    public BudgetPeriod getPeriod() { return period; }
+    public LocalDate getStartDate() { return startDate; }
+    public LocalDate getEndDate() { return endDate; }
+    
+    /**
+     * @return true if the budget applies on day
+     */
+    public boolean isActiveOn(LocalDate day) {
+        return !day.isBefore(startDate) && !day.isAfter(endDate);
+    }
+}
+
+/**
+ * Spend against a budget in its current window, at one point in time
+ */
+class BudgetStatus {
+    private final Budget budget;
+    private final LocalDate windowStart;
+    private final LocalDate windowEnd;
+    private final long spentMinor;
+    
+    public BudgetStatus(Budget budget, LocalDate windowStart, LocalDate windowEnd, long spentMinor) {
+        this.budget = budget;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.spentMinor = spentMinor;
+    }
+    
+    public Budget getBudget() { return budget; }
+    public LocalDate getWindowStart() { return windowStart; }
+    public LocalDate getWindowEnd() { return windowEnd; }
+    public long getSpentMinor() { return spentMinor; }
+    public long getRemainingMinor() { return budget.getAmountMinor() - spentMinor; }
+    public boolean isOverspent() { return spentMinor > budget.getAmountMinor(); }
+    
+    /**
+     * @return Spent / limit; 1.0 means the limit is reached exactly
+     */
+    public double getProgress() {
+        return budget.getAmountMinor() <= 0 ? 1.0 : (double) spentMinor / budget.getAmountMinor();
+    }
+}
+
+/**
+ * Receives budget warnings from a BudgetEngine
+ * 
+ * Called on the thread that committed the transaction.
+ */
+interface BudgetListener {
+    /**
+     * Spend crossed the engine's warning threshold (e.g. 80% of the limit)
+     */
+    void onBudgetWarning(BudgetStatus status);
+    
+    /**
+     * Spend went over the budget's limit
+     */
+    void onBudgetOverspent(BudgetStatus status);
+}
+
+/**
+ * Tracks spend against one user's budgets
+ * 
+ * Each budget's spend in its current window (the month or year containing
+ * today, clipped to the budget's dates) is held in memory. When a commit
+ * adds an expense in a budget's category and window, that budget's spend
+ * is re-read from the user's DateRangeIndex in O(log days), so transactions
+ * are never rescanned and a commit racing start() cannot be counted twice.
+ * statuses() only reads the held values, so rendering costs O(1) per budget.
+ */
+final class BudgetEngine implements TransactionListener, AutoCloseable {
+    static final double DEFAULT_WARNING_RATIO = 0.8;
+    
+    private final DatabaseManager db;
+    private final int userId;
+    private final double warningRatio;
+    private final List<BudgetListener> listeners = new CopyOnWriteArrayList<>();
+    
+    private final List<Tracked> tracked = new ArrayList<>();
+    private LocalDate today;
+    private boolean started;
+    private boolean closed;
+    
+    public BudgetEngine(DatabaseManager db, int userId) {
+        this(db, userId, DEFAULT_WARNING_RATIO);
+    }
+    
+    /**
+     * @param warningRatio Fraction of the limit at which onBudgetWarning fires
+     */
+    public BudgetEngine(DatabaseManager db, int userId, double warningRatio) {
+        this.db = db;
+        this.userId = userId;
+        this.warningRatio = warningRatio;
+    }
+    
+    public void addBudgetListener(BudgetListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeBudgetListener(BudgetListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Load the user's current and future budgets and their spend
+     * 
+     * Does nothing if the engine is already running. Called in the
+     * background at login, so it may finish after close().
+     * 
+     * @return true if the engine is running
+     */
+    public synchronized boolean start() {
+        if (started) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        
+        db.addTransactionListener(this);
+        today = LocalDate.now();
+        List<Budget> budgets = db.getBudgets(userId, today);
+        if (budgets == null) {
+            db.removeTransactionListener(this);
+            return false;
+        }
+        for (Budget budget : budgets) {
+            Tracked t = new Tracked(budget);
+            if (!t.roll(today)) {
+                db.removeTransactionListener(this);
+                tracked.clear();
+                return false;
+            }
+            tracked.add(t);
+        }
+        started = true;
+        return true;
+    }
+    
+    /**
+     * Start tracking a budget saved after start()
+     * 
+     * Budgets already tracked (e.g. loaded by start()) are ignored.
+     * 
+     * @return false if its spend could not be read
+     */
+    public synchronized boolean track(Budget budget) {
+        for (Tracked existing : tracked) {
+            if (existing.budget.getId() == budget.getId()) {
+                return true;
+            }
+        }
+        Tracked t = new Tracked(budget);
+        if (!t.roll(today != null ? today : LocalDate.now())) {
+            return false;
+        }
+        tracked.add(t);
+        return true;
+    }
+    
+    @Override
+    public synchronized void onTransactionsAdded(List<Transaction> added) {
+        if (!started) {
+            return;
+        }
+        rollIfNewDay();
+        
+        Set<Tracked> touched = new LinkedHashSet<>();
+        for (Transaction t : added) {
+            if (t.getUserId() != userId || t.getType() != TransactionType.EXPENSE) {
+                continue;
+            }
+            for (Tracked budget : tracked) {
+                if (budget.covers(t)) {
+                    touched.add(budget);
+                }
+            }
+        }
+        
+        for (Tracked budget : touched) {
+            long before = budget.spentMinor;
+            if (budget.refresh()) {
+                notifyCrossings(budget, before);
+            }
+        }
+    }
+    
+    /**
+     * Current status of every budget active today
+     * 
+     * @return Statuses in load order
+     */
+    public synchronized List<BudgetStatus> statuses() {
+        rollIfNewDay();
+        List<BudgetStatus> statuses = new ArrayList<>();
+        for (Tracked t : tracked) {
+            if (t.windowStart != null) {
+                statuses.add(t.status());
+            }
+        }
+        return statuses;
+    }
+    
+    /**
+     * Stop receiving transactions
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        db.removeTransactionListener(this);
+    }
+    
+    /**
+     * Move every budget to the window containing today once the date changes
+     */
+    private void rollIfNewDay() {
+        LocalDate now = LocalDate.now();
+        if (today != null && !now.equals(today)) {
+            today = now;
+            tracked.removeIf(t -> now.isAfter(t.budget.getEndDate()));
+            for (Tracked t : tracked) {
+                t.roll(now);
+            }
+        }
+    }
+    
+    private void notifyCrossings(Tracked budget, long before) {
+        long limit = budget.budget.getAmountMinor();
+        long warning = (long) Math.ceil(limit * warningRatio);
+        long after = budget.spentMinor;
+        BudgetStatus status = budget.status();
+        
+        for (BudgetListener listener : listeners) {
+            try {
+                if (before < warning && after >= warning && after <= limit) {
+                    listener.onBudgetWarning(status);
+                }
+                if (before <= limit && after > limit) {
+                    listener.onBudgetOverspent(status);
+                }
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * A budget with its current window and spend
+     */
+    private final class Tracked {
+        final Budget budget;
+        LocalDate windowStart; // null while the budget is not active today
+        LocalDate windowEnd;
+        long spentMinor;
+        
+        Tracked(Budget budget) {
+            this.budget = budget;
+        }
+        
+        /**
+         * Move to the window containing day
+         * 
+         * @return false if the spend could not be read
+         */
+        boolean roll(LocalDate day) {
+            if (!budget.isActiveOn(day)) {
+                windowStart = null;
+                windowEnd = null;
+                spentMinor = 0;
+                return true;
+            }
+            BudgetPeriod period = budget.getPeriod();
+            windowStart = max(period.periodStart(day), budget.getStartDate());
+            windowEnd = min(period.periodEnd(day), budget.getEndDate());
+            return refresh();
+        }
+        
+        boolean refresh() {
+            if (windowStart == null) {
+                return true;
+            }
+            RangeTotals totals = db.getTotals(userId, windowStart, windowEnd, budget.getCategoryId());
+            if (totals == null) {
+                return false;
+            }
+            spentMinor = totals.getExpenses();
+            return true;
+        }
+        
+        boolean covers(Transaction t) {
+            return windowStart != null
+                && t.getCategoryId() == budget.getCategoryId()
+                && !t.getDate().isBefore(windowStart)
+                && !t.getDate().isAfter(windowEnd);
+        }
+        
+        BudgetStatus status() {
+            return new BudgetStatus(budget, windowStart, windowEnd, spentMinor);
+        }
+        
+        private LocalDate max(LocalDate a, LocalDate b) { return a.isAfter(b) ? a : b; }
+        private LocalDate min(LocalDate a, LocalDate b) { return a.isBefore(b) ? a : b; }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// REPORTS CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Time bucket size of a report
+ */
+enum Granularity {
+    DAY("Daily"),
+    WEEK("Weekly"),
+    MONTH("Monthly"),
+    QUARTER("Quarterly"),
+    YEAR("Yearly");
+    
+    private final String label;
+    
+    Granularity(String label) {
+        this.label = label;
+    }
+    
+    /**
+     * @return First day of the bucket containing day (weeks start on Monday)
+     */
+    public LocalDate bucketStart(LocalDate day) {
+        switch (this) {
+            case DAY:
+                return day;
+            case WEEK:
+                return day.minusDays(day.getDayOfWeek().getValue() - 1);
+            case MONTH:
+                return day.withDayOfMonth(1);
+            case QUARTER:
+                return LocalDate.of(day.getYear(), (day.getMonthValue() - 1) / 3 * 3 + 1, 1);
+            default:
+                return day.withDayOfYear(1);
+        }
+    }
+    
+    /**
+     * @return First day of the bucket after the one starting at bucketStart
+     */
+    public LocalDate nextBucket(LocalDate bucketStart) {
+        switch (this) {
+            case DAY:
+                return bucketStart.plusDays(1);
+            case WEEK:
+                return bucketStart.plusWeeks(1);
+            case MONTH:
+                return bucketStart.plusMonths(1);
+            case QUARTER:
+                return bucketStart.plusMonths(3);
+            default:
+                return bucketStart.plusYears(1);
+        }
+    }
+    
+    /**
+     * @return Display label of the bucket starting at bucketStart,
+     *         e.g. 2026-10-18, 2026-W42, 2026-10, 2026-Q4 or 2026
+     */
+    public String bucketLabel(LocalDate bucketStart) {
+        switch (this) {
+            case DAY:
+                return bucketStart.toString();
+            case WEEK:
+                int week = bucketStart.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+                return bucketStart.get(IsoFields.WEEK_BASED_YEAR) + (week < 10 ? "-W0" : "-W") + week;
+            case MONTH:
+                return DatabaseManager.formatMonthKey(DatabaseManager.toMonthKey(YearMonth.from(bucketStart)));
+            case QUARTER:
+                return bucketStart.getYear() + "-Q" + ((bucketStart.getMonthValue() - 1) / 3 + 1);
+            default:
+                return String.valueOf(bucketStart.getYear());
+        }
+    }
+    
+    /**
+     * @return true if every bucket is made of whole calendar months
+     */
+    boolean isMonthAligned() {
+        return this == MONTH || this == QUARTER || this == YEAR;
+    }
+    
+    @Override
+    public String toString() {
+        return label;
+    }
+}
+
+/**
+ * Income and expense totals of one report period, overall and per category
+ * 
+ * All amounts are minor units.
+ */
+class ReportBucket {
+    private static final int INCOME = 0;
+    private static final int EXPENSE = 1;
+    
+    private final LocalDate start;
+    private final LocalDate end;
+    private final String label;
+    private long incomeMinor;
+    private long expenseMinor;
+    // Category id to [income, expense]
+    private final Map<Integer, long[]> byCategory = new TreeMap<>();
+    
+    ReportBucket(LocalDate start, LocalDate end, String label) {
+        this.start = start;
+        this.end = end;
+        this.label = label;
+    }
+    
+    void add(TransactionType type, int categoryId, long amountMinor) {
+        int slot = type == TransactionType.INCOME ? INCOME : EXPENSE;
+        if (slot == INCOME) {
+            incomeMinor = Money.add(incomeMinor, amountMinor);
+        } else {
+            expenseMinor = Money.add(expenseMinor, amountMinor);
+        }
+        byCategory.computeIfAbsent(categoryId, c -> new long[2])[slot] += amountMinor;
+    }
+    
+    /**
+     * @return First day of the period, clipped to the report range
+     */
+    public LocalDate getStart() { return start; }
+    
+    /**
+     * @return Last day of the period, clipped to the report range
+     */
+    public LocalDate getEnd() { return end; }
+    
+    public String getLabel() { return label; }
+    public long getIncome() { return incomeMinor; }
+    public long getExpenses() { return expenseMinor; }
+    public long getNet() { return Math.subtractExact(incomeMinor, expenseMinor); }
+    
+    /**
+     * @return Ids of the categories with activity in this period
+     */
+    public Set<Integer> getCategoryIds() {
+        return Collections.unmodifiableSet(byCategory.keySet());
+    }
+    
+    /**
+     * @return Total of one type and category in this period
+     */
+    public long getCategoryTotal(TransactionType type, int categoryId) {
+        long[] totals = byCategory.get(categoryId);
+        return totals == null ? 0L : totals[type == TransactionType.INCOME ? INCOME : EXPENSE];
+    }
+}
+
+/**
+ * Rollup of a user's transactions over a date range at one granularity
+ */
+class Report {
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Granularity granularity;
+    private final List<ReportBucket> buckets;
+    
+    Report(LocalDate from, LocalDate to, Granularity granularity, List<ReportBucket> buckets) {
+        this.from = from;
+        this.to = to;
+        this.granularity = granularity;
+        this.buckets = Collections.unmodifiableList(buckets);
+    }
+    
+    public LocalDate getFrom() { return from; }
+    public LocalDate getTo() { return to; }
+    public Granularity getGranularity() { return granularity; }
+    
+    /**
+     * @return One bucket per period in the range, oldest first, including empty ones
+     */
+    public List<ReportBucket> getBuckets() { return buckets; }
+    
+    public long getTotalIncome() {
+        long total = 0;
+        for (ReportBucket bucket : buckets) {
+            total = Money.add(total, bucket.getIncome());
+        }
+        return total;
+    }
+    
+    public long getTotalExpenses() {
+        long total = 0;
+        for (ReportBucket bucket : buckets) {
+            total = Money.add(total, bucket.getExpenses());
+        }
+        return total;
+    }
+}
+
+/**
+ * Builds and caches day/week/month/quarter/year reports
+ * 
+ * A report is built in one pass over pre-aggregated rows. Whole months in
+ * the range are read from monthly_rollups when the granularity is month
+ * or coarser; only the partial months at either end (and day or week
+ * reports) read per-day sums from the transactions table. So a ten-year
+ * yearly report reads at most about 120 rollup rows per category and type.
+ * 
+ * Reports are cached by (user, range, granularity). A committed
+ * transaction evicts the cached reports of its user whose range contains
+ * its date.
+ */
+final class ReportsEngine implements TransactionListener, AutoCloseable {
+    private static final int CACHED_REPORTS = 64;
+    
+    private final DatabaseManager db;
+    private final Map<ReportKey, Report> cache =
+        new LinkedHashMap<ReportKey, Report>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ReportKey, Report> eldest) {
+                return size() > CACHED_REPORTS;
+            }
+        };
+    // Builds in flight; a commit for the user removes the token so a
+    // report that may have missed it is not cached
+    private final Map<ReportKey, Object> builds = new HashMap<>();
+    
+    public ReportsEngine(DatabaseManager db) {
+        this.db = db;
+        db.addTransactionListener(this);
+    }
+    
+    /**
+     * Get a report, building it on a cache miss
+     * 
+     * @param userId User's ID
+     * @param from First date, inclusive
+     * @param to Last date, inclusive
+     * @param granularity Bucket size
+     * @return Report, or null on database error
+     */
+    public Report getReport(int userId, LocalDate from, LocalDate to, Granularity granularity) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Report range ends before it starts");
+        }
+        
+        ReportKey key = new ReportKey(userId, from, to, granularity);
+        Object build = new Object();
+        synchronized (this) {
+            Report cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            builds.put(key, build);
+        }
+        
+        Report report = build(userId, from, to, granularity);
+        synchronized (this) {
+            if (builds.remove(key, build) && report != null) {
+                cache.put(key, report);
+            }
+        }
+        return report;
+    }
+    
+    @Override
+    public synchronized void onTransactionsAdded(List<Transaction> added) {
+        for (Transaction t : added) {
+            builds.keySet().removeIf(key -> key.userId == t.getUserId());
+            cache.keySet().removeIf(key -> key.covers(t));
+        }
+    }
+    
+    /**
+     * Stop receiving transactions and drop cached reports
+     */
+    @Override
+    public synchronized void close() {
+        db.removeTransactionListener(this);
+        cache.clear();
+    }
+    
+    private Report build(int userId, LocalDate from, LocalDate to, Granularity granularity) {
+        // Empty buckets for every period so the result has no gaps
+        TreeMap<LocalDate, ReportBucket> buckets = new TreeMap<>();
+        for (LocalDate start = granularity.bucketStart(from); !start.isAfter(to);
+                start = granularity.nextBucket(start)) {
+            LocalDate end = granularity.nextBucket(start).minusDays(1);
+            buckets.put(start, new ReportBucket(start.isBefore(from) ? from : start,
+                                                end.isAfter(to) ? to : end,
+                                                granularity.bucketLabel(start)));
+        }
+        
+        DatabaseManager.DailyTotalConsumer addDay = (epochDay, type, categoryId, totalMinor) ->
+            buckets.floorEntry(LocalDate.ofEpochDay(epochDay)).getValue().add(type, categoryId, totalMinor);
+        
+        YearMonth firstFull = from.getDayOfMonth() == 1 ? YearMonth.from(from) : YearMonth.from(from).plusMonths(1);
+        YearMonth lastFull = to.equals(YearMonth.from(to).atEndOfMonth())
+            ? YearMonth.from(to) : YearMonth.from(to).minusMonths(1);
+        if (!granularity.isMonthAligned() || firstFull.isAfter(lastFull)) {
+            return db.forEachDailyTotal(userId, from, to, addDay)
+                ? new Report(from, to, granularity, new ArrayList<>(buckets.values())) : null;
+        }
+        
+        // Whole months from the rollups, partial months at either end from the rows
+        LocalDate fullStart = firstFull.atDay(1);
+        LocalDate fullEnd = lastFull.atEndOfMonth();
+        boolean ok = db.forEachMonthlyBucket(userId, firstFull, lastFull, (type, monthKey, categoryId, totalMinor) ->
+            buckets.floorEntry(LocalDate.of(monthKey / 100, monthKey % 100, 1)).getValue()
+                   .add(type, categoryId, totalMinor));
+        if (ok && from.isBefore(fullStart)) {
+            ok = db.forEachDailyTotal(userId, from, fullStart.minusDays(1), addDay);
+        }
+        if (ok && to.isAfter(fullEnd)) {
+            ok = db.forEachDailyTotal(userId, fullEnd.plusDays(1), to, addDay);
+        }
+        return ok ? new Report(from, to, granularity, new ArrayList<>(buckets.values())) : null;
+    }
+    
+    /**
+     * Cache key of a report
+     */
+    private static final class ReportKey {
+        final int userId;
+        final LocalDate from;
+        final LocalDate to;
+        final Granularity granularity;
+        
+        ReportKey(int userId, LocalDate from, LocalDate to, Granularity granularity) {
+            this.userId = userId;
+            this.from = from;
+            this.to = to;
+            this.granularity = granularity;
+        }
+        
+        boolean covers(Transaction t) {
+            return userId == t.getUserId() && !t.getDate().isBefore(from) && !t.getDate().isAfter(to);
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ReportKey)) return false;
+            ReportKey other = (ReportKey) o;
+            return userId == other.userId && from.equals(other.from)
+                && to.equals(other.to) && granularity == other.granularity;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, from, to, granularity);
+        }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// PARALLEL ANALYTICS CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Totals, expenses per category and expenses per month for a window
+ * 
+ * Partial summaries computed over disjoint rows can be merged, which is
+ * how ParallelAnalytics combines the results of its fork/join tasks.
+ * All amounts are minor units.
+ */
+final class AnalyticsSummary {
+    private final YearMonth firstMonth;
+    long incomeMinor;
+    long expenseMinor;
+    long rowCount;
+    long[] expensesByCategory = new long[1];
+    final long[] expensesByMonth;
+    
+    /**
+     * @param firstMonth Month at index 0 of the monthly totals
+     * @param months Number of months in the window
+     */
+    AnalyticsSummary(YearMonth firstMonth, int months) {
+        this.firstMonth = firstMonth;
+        this.expensesByMonth = new long[months];
+    }
+    
+    /**
+     * Make room for category ids up to maxCategoryId
+     */
+    void ensureCategory(int maxCategoryId) {
+        if (maxCategoryId >= expensesByCategory.length) {
+            expensesByCategory = Arrays.copyOf(expensesByCategory, maxCategoryId + 1);
+        }
+    }
+    
+    /**
+     * Add another partial summary for the same window into this one
+     * 
+     * @return this
+     */
+    AnalyticsSummary merge(AnalyticsSummary other) {
+        incomeMinor = Money.add(incomeMinor, other.incomeMinor);
+        expenseMinor = Money.add(expenseMinor, other.expenseMinor);
+        rowCount += other.rowCount;
+        ensureCategory(other.expensesByCategory.length - 1);
+        for (int i = 0; i < other.expensesByCategory.length; i++) {
+            expensesByCategory[i] += other.expensesByCategory[i];
+        }
+        for (int i = 0; i < expensesByMonth.length; i++) {
+            expensesByMonth[i] += other.expensesByMonth[i];
+        }
+        return this;
+    }
+    
+    public long getTotalIncome() { return incomeMinor; }
+    public long getTotalExpenses() { return expenseMinor; }
+    public long getRowCount() { return rowCount; }
+    public YearMonth getFirstMonth() { return firstMonth; }
+    
+    /**
+     * @return Expense totals indexed by category id
+     */
+    public long[] getExpensesByCategory() { return expensesByCategory.clone(); }
+    
+    /**
+     * @return Expense totals per month; index 0 is getFirstMonth()
+     */
+    public long[] getExpensesByMonth() { return expensesByMonth.clone(); }
+}
+
+/**
+ * Fork/join aggregation over TransactionStores
+ * 
+ * The rows of every store are cut into fixed-size chunks. Each leaf task
+ * summarizes one chunk in a single pass and the partial summaries are
+ * merged on the way back up, so one user's multi-million-row history and
+ * an admin report across all users use the same code path.
+ */
+final class ParallelAnalytics implements AutoCloseable {
+    static final int DEFAULT_CHUNK_ROWS = 1 << 16;
+    
+    private final ForkJoinPool pool;
+    private final int chunkRows;
+    
+    /**
+     * Use one worker per available processor
+     */
+    public ParallelAnalytics() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * @param parallelism Number of worker threads
+     */
+    public ParallelAnalytics(int parallelism) {
+        this(parallelism, DEFAULT_CHUNK_ROWS);
+    }
+    
+    /**
+     * @param parallelism Number of worker threads
+     * @param chunkRows Rows summarized by one leaf task
+     */
+    public ParallelAnalytics(int parallelism, int chunkRows) {
+        if (parallelism < 1 || chunkRows < 1) {
+            throw new IllegalArgumentException("parallelism and chunkRows must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.chunkRows = chunkRows;
+    }
+    
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+    
+    /**
+     * Summarize one user's store
+     */
+    public AnalyticsSummary summarize(TransactionStore store, YearMonth first, YearMonth last) {
+        return summarize(List.of(store), first, last);
+    }
+    
+    /**
+     * Summarize several stores together, e.g. every user's
+     * 
+     * @param stores Stores to aggregate; must not be appended to meanwhile
+     * @param first First month of the monthly breakdown
+     * @param last Last month of the monthly breakdown
+     * @return Combined summary
+     */
+    public AnalyticsSummary summarize(Collection<TransactionStore> stores, YearMonth first, YearMonth last) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (TransactionStore store : stores) {
+            for (int from = 0; from < store.size(); from += chunkRows) {
+                chunks.add(new Chunk(store, from, Math.min(from + chunkRows, store.size())));
+            }
+        }
+        
+        Window window = new Window(first, last);
+        if (chunks.isEmpty()) {
+            return window.newSummary();
+        }
+        return pool.invoke(new SummaryTask(chunks, 0, chunks.size(), window));
+    }
+    
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+    
+    /**
+     * Rows [from, to) of one store
+     */
+    private static final class Chunk {
+        final TransactionStore store;
+        final int from;
+        final int to;
+        
+        Chunk(TransactionStore store, int from, int to) {
+            this.store = store;
+            this.from = from;
+            this.to = to;
+        }
+    }
+    
+    /**
+     * Month window shared by every task of one summarize() call
+     */
+    private static final class Window {
+        final YearMonth first;
+        final int months;
+        final int firstDay;
+        final int[] monthOfDay;
+        
+        Window(YearMonth first, YearMonth last) {
+            this.first = first;
+            this.months = TransactionStore.monthCount(first, last);
+            this.firstDay = (int) first.atDay(1).toEpochDay();
+            this.monthOfDay = TransactionStore.monthOfDayTable(first, last);
+        }
+        
+        AnalyticsSummary newSummary() {
+            return new AnalyticsSummary(first, months);
+        }
+    }
+    
+    /**
+     * Summarizes chunks [lo, hi) by splitting the range in half
+     */
+    private static final class SummaryTask extends RecursiveTask<AnalyticsSummary> {
+        private static final long serialVersionUID = 1L;
+        
+        private final List<Chunk> chunks;
+        private final int lo;
+        private final int hi;
+        private final Window window;
+        
+        SummaryTask(List<Chunk> chunks, int lo, int hi, Window window) {
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+            this.window = window;
+        }
+        
+        @Override
+        protected AnalyticsSummary compute() {
+            if (hi - lo == 1) {
+                Chunk chunk = chunks.get(lo);
+                AnalyticsSummary summary = window.newSummary();
+                chunk.store.summarize(chunk.from, chunk.to, window.firstDay, window.monthOfDay, summary);
+                return summary;
+            }
+            
+            int mid = (lo + hi) >>> 1;
+            SummaryTask left = new SummaryTask(chunks, lo, mid, window);
+            left.fork();
+            AnalyticsSummary right = new SummaryTask(chunks, mid, hi, window).compute();
+            return left.join().merge(right);
+        }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// BENCHMARK CLASS
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Standalone performance harness, kept out of the application entry point
+ * 
+ * Usage: java ... com.fiscalforge.FiscalForgeBenchmark analytics [rows]
+ *        java ... com.fiscalforge.FiscalForgeBenchmark store-footprint [rows]
+ *        java ... com.fiscalforge.FiscalForgeBenchmark batch-insert [rows]
+ */
+final class FiscalForgeBenchmark {
+    private FiscalForgeBenchmark() {
+    }
+    
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "";
+        switch (mode) {
+            case "analytics":
+                analytics(args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000, 1, 4, 16);
+                break;
+            case "store-footprint":
+                storeFootprint(args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "batch-insert":
+                batchInsert(args.length > 1 ? Integer.parseInt(args[1]) : 10_000);
+                break;
+            default:
+                System.err.println("Usage: FiscalForgeBenchmark analytics|store-footprint|batch-insert [rows]");
+                System.exit(2);
+        }
+    }
+    
+    /**
+     * Time ParallelAnalytics on synthetic data at several parallelism levels
+     * 
+     * Prints the median of five runs per level and the speedup over the
+     * first level.
+     * 
+     * @param rows Number of synthetic rows
+     * @param parallelisms Worker counts to compare
+     */
+    static void analytics(int rows, int... parallelisms) {
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        TransactionStore store = new TransactionStore(rows);
+        Random random = new Random(42);
+        int firstDay = (int) LocalDate.now().minusYears(5).toEpochDay();
+        for (int i = 0; i < rows; i++) {
+            store.append(firstDay + random.nextInt(5 * 365),
+                         random.nextInt(4) == 0 ? TransactionType.INCOME : TransactionType.EXPENSE,
+                         1 + random.nextInt(7), random.nextInt(100_000), null);
+        }
+        
+        YearMonth last = YearMonth.now();
+        YearMonth first = last.minusMonths(11);
+        double baseline = 0;
+        for (int parallelism : parallelisms) {
+            try (ParallelAnalytics analytics = new ParallelAnalytics(parallelism)) {
+                long[] times = new long[5];
+                analytics.summarize(store, first, last); // Warm-up
+                for (int run = 0; run < times.length; run++) {
+                    long start = System.nanoTime();
+                    analytics.summarize(store, first, last);
+                    times[run] = System.nanoTime() - start;
+                }
+                Arrays.sort(times);
+                double millis = times[times.length / 2] / 1e6;
+                if (baseline == 0) {
+                    baseline = millis;
+                }
+                System.out.printf("parallelism %2d: %8.1f ms (%.2fx)%n", parallelism, millis, baseline / millis);
+            }
+        }
+    }
+    
+    /**
+     * Compare the heap held by a List<Transaction> and a TransactionStore
+     * 
+     * Both hold the same synthetic rows with 20-character descriptions.
+     * Heap is measured after GC, so run with a heap large enough for the
+     * list and no other load. The store is measured first, while the heap
+     * is still clean, since it is the smaller and noisier figure.
+     * 
+     * @param rows Number of synthetic rows
+     */
+    static void storeFootprint(int rows) {
+        long storeBytes = retainedBytes(() -> {
+            TransactionStore store = new TransactionStore();
+            Random random = new Random(42);
+            for (int i = 0; i < rows; i++) {
+                Transaction t = syntheticTransaction(random, i);
+                store.append((int) t.getDate().toEpochDay(), t.getType(), t.getCategoryId(),
+                             t.getAmountMinor(), t.getDescription());
+            }
+            store.trimToSize();
+            System.out.printf("TransactionStore estimatedBytes: %.1f MB%n", store.estimatedBytes() / 1e6);
+            return store;
+        });
+        System.out.printf("TransactionStore:  %,d rows, %.1f MB%n", rows, storeBytes / 1e6);
+        
+        long listBytes = retainedBytes(() -> {
+            List<Transaction> list = new ArrayList<>();
+            Random random = new Random(42);
+            for (int i = 0; i < rows; i++) {
+                list.add(syntheticTransaction(random, i));
+            }
+            return list;
+        });
+        System.out.printf("List<Transaction>: %,d rows, %.1f MB%n", rows, listBytes / 1e6);
+    }
+    
+    /**
+     * Time an addTransaction loop against one addTransactions call
+     * 
+     * Needs the database configured in DatabaseManager. The rows go to a
+     * throwaway user, which is deleted with its rows afterwards.
+     * 
+     * @param rows Number of synthetic rows inserted by each path
+     */
+    static void batchInsert(int rows) {
+        DatabaseManager db = new DatabaseManager();
+        int userId = 0;
+        try {
+            if (!db.initializeDatabase()) {
+                System.err.println("Could not initialize the database");
+                return;
+            }
+            String username = "benchmark-" + System.currentTimeMillis();
+            String password = Long.toHexString(new Random().nextLong());
+            User user = db.registerUser(username, password, null)
+                ? db.authenticateUser(username, password) : null;
+            if (user == null) {
+                System.err.println("Could not create the benchmark user");
+                return;
+            }
+            userId = user.getId();
+            int categoryId = db.getCategoryId("Other");
+            
+            Random random = new Random(42);
+            List<Transaction> single = new ArrayList<>(rows);
+            List<Transaction> batched = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                single.add(syntheticTransaction(random, userId, categoryId, "Single " + i));
+                batched.add(syntheticTransaction(random, userId, categoryId, "Batched " + i));
+            }
+            
+            long start = System.nanoTime();
+            int singleInserted = 0;
+            for (Transaction t : single) {
+                if (db.addTransaction(t)) singleInserted++;
+            }
+            double singleSeconds = (System.nanoTime() - start) / 1e9;
+            
+            start = System.nanoTime();
+            int batchInserted = db.addTransactions(batched).getInsertedCount();
+            double batchSeconds = (System.nanoTime() - start) / 1e9;
+            
+            System.out.printf("addTransaction loop: %,d rows in %.2f s (%,.0f rows/s)%n",
+                              singleInserted, singleSeconds, singleInserted / singleSeconds);
+            System.out.printf("addTransactions:     %,d rows in %.2f s (%,.0f rows/s)%n",
+                              batchInserted, batchSeconds, batchInserted / batchSeconds);
+            System.out.printf("speedup: %.1fx%n", singleSeconds / batchSeconds);
+        } finally {
+            if (userId != 0) {
+                db.deleteUser(userId);
+            }
+            db.close();
+        }
+    }
+    
+    /**
+     * @return Heap still in use once build has returned, less the heap in use before
+     */
+    private static long retainedBytes(Supplier<Object> build) {
+        long before = usedHeapAfterGc();
+        Object built = build.get();
+        long after = usedHeapAfterGc();
+        // Reading built here keeps it reachable until after the measurement
+        return built != null ? after - before : 0;
+    }
+    
+    private static Transaction syntheticTransaction(Random random, int row) {
+        LocalDate date = LocalDate.now().minusDays(random.nextInt(5 * 365));
+        TransactionType type = random.nextInt(4) == 0 ? TransactionType.INCOME : TransactionType.EXPENSE;
+        return new Transaction(0, 1, date, type, 1 + random.nextInt(7),
+                               String.format("Card payment %07d", row), 1 + random.nextInt(100_000));
+    }
+    
+    private static Transaction syntheticTransaction(Random random, int userId, int categoryId,
+                                                    String description) {
+        LocalDate date = LocalDate.now().minusDays(random.nextInt(5 * 365));
+        TransactionType type = random.nextInt(4) == 0 ? TransactionType.INCOME : TransactionType.EXPENSE;
+        return new Transaction(0, userId, date, type, categoryId,
+                               description, 1 + random.nextInt(100_000));
+    }
+    
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// EXPORT CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Streaming RFC 4180 CSV writer over a file channel
+ * 
+ * Fields are encoded straight into one large buffer, which is written to
+ * the channel whenever it fills. Dates and amounts are
+ * formatted digit by digit and text is UTF-8 encoded by hand, so writing
+ * a row allocates nothing and the heap stays flat however many rows are
+ * exported.
+ * 
+ * A field is quoted only when it contains a comma, quote, CR or LF; quotes
+ * inside it are doubled. A null field is written as an empty field.
+ * Records end with CRLF.
+ */
+final class CsvWriter implements Closeable {
+    static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+    // Longest UTF-8 encoding of one char, or of a surrogate pair's second half
+    private static final int MAX_CHAR_BYTES = 4;
+    // Longest formatted amount: sign, 19 digits and the decimal point
+    private static final int MAX_AMOUNT_BYTES = 21;
+    
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private boolean firstField = true;
+    
+    CsvWriter(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_BYTES);
+    }
+    
+    CsvWriter(Path path, int bufferBytes) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferBytes, 64));
+    }
+    
+    /**
+     * Write to any channel, e.g. an in-memory or compressing one
+     * 
+     * The channel is closed when the writer is closed.
+     */
+    CsvWriter(WritableByteChannel channel, int bufferBytes) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferBytes, 64));
+    }
+    
+    /**
+     * Encode a fixed value once, e.g. a category name written on many rows
+     * 
+     * @param value Field text, may be null
+     * @return Field bytes, quoted if needed, for field(byte[])
+     */
+    static byte[] encodeField(CharSequence value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        boolean quote = needsQuotes(value);
+        StringBuilder out = new StringBuilder(value.length() + 2);
+        if (quote) {
+            out.append('"');
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            out.append(c);
+            if (c == '"') {
+                out.append('"');
+            }
+        }
+        if (quote) {
+            out.append('"');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Write a text field, quoting it if needed
+     * 
+     * @param value Field text, or null for an empty field
+     */
+    CsvWriter field(CharSequence value) throws IOException {
+        separate();
+        if (value == null) {
+            return this;
+        }
+        boolean quote = needsQuotes(value);
+        if (quote) {
+            put((byte) '"');
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (buffer.remaining() < MAX_CHAR_BYTES + 1) {
+                drain();
+            }
+            if (c < 0x80) {
+                buffer.put((byte) c);
+                if (c == '"') {
+                    buffer.put((byte) '"');
+                }
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                       && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | cp >> 18));
+                buffer.put((byte) (0x80 | cp >> 12 & 0x3F));
+                buffer.put((byte) (0x80 | cp >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate; same replacement as String.getBytes
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        if (quote) {
+            put((byte) '"');
+        }
+        return this;
+    }
+    
+    /**
+     * Write a field encoded by encodeField
+     */
+    CsvWriter field(byte[] encoded) throws IOException {
+        separate();
+        int offset = 0;
+        while (offset < encoded.length) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int n = Math.min(buffer.remaining(), encoded.length - offset);
+            buffer.put(encoded, offset, n);
+            offset += n;
+        }
+        return this;
+    }
+    
+    /**
+     * Write a minor-unit amount as a plain decimal, e.g. -123456 as -1234.56
+     */
+    CsvWriter amountField(long minor) throws IOException {
+        separate();
+        ensure(MAX_AMOUNT_BYTES);
+        if (minor < 0) {
+            buffer.put((byte) '-');
+        }
+        // Negative magnitude so Long.MIN_VALUE needs no special case
+        long negative = minor < 0 ? minor : -minor;
+        long units = negative / 100;
+        int cents = (int) -(negative % 100);
+        if (units == 0) {
+            buffer.put((byte) '0');
+        } else {
+            putDigits(units);
+        }
+        buffer.put((byte) '.');
+        buffer.put((byte) ('0' + cents / 10));
+        buffer.put((byte) ('0' + cents % 10));
+        return this;
+    }
+    
+    /**
+     * Write a date given as days since 1970-01-01 in ISO form, e.g. 2026-10-18
+     */
+    CsvWriter dateField(int epochDay) throws IOException {
+        separate();
+        ensure(11);
+        // Civil-from-days over 400-year eras starting on 0000-03-01
+        long z = epochDay + 719468L;
+        long era = Math.floorDiv(z, 146097);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        
+        if (year < 0 || year > 9999) {
+            // Outside what four digits can hold; not worth a fast path
+            return rawText(LocalDate.ofEpochDay(epochDay).toString());
+        }
+        int y = (int) year;
+        buffer.put((byte) ('0' + y / 1000));
+        buffer.put((byte) ('0' + y / 100 % 10));
+        buffer.put((byte) ('0' + y / 10 % 10));
+        buffer.put((byte) ('0' + y % 10));
+        buffer.put((byte) '-');
+        buffer.put((byte) ('0' + month / 10));
+        buffer.put((byte) ('0' + month % 10));
+        buffer.put((byte) '-');
+        buffer.put((byte) ('0' + day / 10));
+        buffer.put((byte) ('0' + day % 10));
+        return this;
+    }
+    
+    /**
+     * End the current record
+     */
+    CsvWriter endRecord() throws IOException {
+        ensure(2);
+        buffer.put((byte) '\r');
+        buffer.put((byte) '\n');
+        firstField = true;
+        return this;
+    }
+    
+    /**
+     * Write out buffered bytes
+     */
+    void flush() throws IOException {
+        drain();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+    
+    private static boolean needsQuotes(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private CsvWriter rawText(String ascii) throws IOException {
+        ensure(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            buffer.put((byte) ascii.charAt(i));
+        }
+        return this;
+    }
+    
+    /**
+     * Write the digits of a negative number's magnitude
+     */
+    private void putDigits(long negative) {
+        int digits = 0;
+        for (long n = negative; n != 0; n /= 10) {
+            digits++;
+        }
+        int end = buffer.position() + digits;
+        for (int pos = end - 1; negative != 0; pos--, negative /= 10) {
+            buffer.put(pos, (byte) ('0' - negative % 10));
+        }
+        buffer.position(end);
+    }
+    
+    private void separate() throws IOException {
+        if (firstField) {
+            firstField = false;
+        } else {
+            put((byte) ',');
+        }
+    }
+    
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            drain();
+        }
+        buffer.put(b);
+    }
+    
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+    
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
+
+/**
+ * Streaming XLSX (Office Open XML) workbook writer
+ * 
+ * Sheet XML is written row by row straight into a ZipOutputStream; no
+ * document tree is built. Low-cardinality text such as types and
+ * categories goes into the shared-string table, deduplicated; free text
+ * such as descriptions is written inline so the table does not grow with
+ * the row count. Amounts are numeric cells and dates are date-formatted
+ * serial numbers, so Excel can sum and sort them.
+ * 
+ * A sheet that reaches Excel's row limit is continued on a new sheet
+ * with the same header row.
+ */
+final class XlsxWriter implements Closeable {
+    // Excel's rows-per-sheet limit
+    static final int MAX_ROWS_PER_SHEET = 1_048_576;
+    // Days from Excel's 1900 epoch (with its leap-year bug) to 1970-01-01
+    private static final int EXCEL_EPOCH_OFFSET = 25569;
+    
+    private static final int STYLE_HEADER = 1;
+    private static final int STYLE_DATE = 2;
+    private static final int STYLE_AMOUNT = 3;
+    
+    private final ZipOutputStream zip;
+    private final Writer out;
+    private final String sheetName;
+    private final double[] columnWidths;
+    private final int rowsPerSheet;
+    private final Map<String, Integer> sharedStrings = new HashMap<>();
+    private final List<String> sharedStringOrder = new ArrayList<>();
+    private long sharedStringRefs;
+    private String[] header;
+    private int sheetCount;
+    private int rowInSheet;
+    private boolean rowOpen;
+    // Reused for formatting numbers without per-cell strings
+    private final StringBuilder number = new StringBuilder(24);
+    
+    /**
+     * @param path File to create
+     * @param sheetName Name of the first sheet; later sheets get " 2", " 3", ...
+     * @param columnWidths Column widths in characters
+     */
+    XlsxWriter(Path path, String sheetName, double... columnWidths) throws IOException {
+        this(path, sheetName, columnWidths, MAX_ROWS_PER_SHEET);
+    }
+    
+    XlsxWriter(Path path, String sheetName, double[] columnWidths, int rowsPerSheet) throws IOException {
+        this.zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        this.out = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 1 << 16);
+        this.sheetName = sheetName;
+        this.columnWidths = columnWidths.clone();
+        this.rowsPerSheet = rowsPerSheet;
+        startSheet();
+    }
+    
+    /**
+     * Write a bold header row, repeated at the top of any continuation sheet
+     */
+    XlsxWriter headerRow(String... titles) throws IOException {
+        header = titles.clone();
+        writeHeader();
+        return this;
+    }
+    
+    /**
+     * Start a data row
+     */
+    XlsxWriter startRow() throws IOException {
+        endRowIfOpen();
+        if (rowInSheet == rowsPerSheet) {
+            endSheet();
+            startSheet();
+            if (header != null) {
+                writeHeader();
+            }
+        }
+        rowInSheet++;
+        out.write("<row r=\"");
+        out.write(Integer.toString(rowInSheet));
+        out.write("\">");
+        rowOpen = true;
+        return this;
+    }
+    
+    /**
+     * Write a text cell whose value repeats across rows, via the shared-string table
+     * 
+     * @param value Cell text, or null for an empty cell
+     */
+    XlsxWriter sharedStringCell(String value) throws IOException {
+        if (value == null) {
+            return emptyCell();
+        }
+        Integer index = sharedStrings.get(value);
+        if (index == null) {
+            index = sharedStringOrder.size();
+            sharedStrings.put(value, index);
+            sharedStringOrder.add(value);
+        }
+        sharedStringRefs++;
+        out.write("<c t=\"s\"><v>");
+        out.write(Integer.toString(index));
+        out.write("</v></c>");
+        return this;
+    }
+    
+    /**
+     * Write a text cell inline, for values that rarely repeat
+     * 
+     * @param value Cell text, or null for an empty cell
+     */
+    XlsxWriter inlineStringCell(String value) throws IOException {
+        if (value == null) {
+            return emptyCell();
+        }
+        out.write("<c t=\"inlineStr\"><is>");
+        writeText(value);
+        out.write("</is></c>");
+        return this;
+    }
+    
+    /**
+     * Write a minor-unit amount as a numeric cell with two decimals
+     */
+    XlsxWriter amountCell(long minor) throws IOException {
+        number.setLength(0);
+        Money.appendTo(number, minor);
+        out.write("<c s=\"" + STYLE_AMOUNT + "\"><v>");
+        out.append(number);
+        out.write("</v></c>");
+        return this;
+    }
+    
+    /**
+     * Write a date given as days since 1970-01-01 as a date-formatted cell
+     */
+    XlsxWriter dateCell(int epochDay) throws IOException {
+        out.write("<c s=\"" + STYLE_DATE + "\"><v>");
+        out.write(Integer.toString(epochDay + EXCEL_EPOCH_OFFSET));
+        out.write("</v></c>");
+        return this;
+    }
+    
+    /**
+     * Finish the workbook: the last sheet, shared strings, styles and package parts
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            endSheet();
+            writeSharedStrings();
+            writePart("xl/styles.xml",
+                "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">" +
+                "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>" +
+                "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>" +
+                "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill>" +
+                "<fill><patternFill patternType=\"gray125\"/></fill></fills>" +
+                "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>" +
+                "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>" +
+                "<cellXfs count=\"4\">" +
+                "<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>" +
+                "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>" +
+                "<xf numFmtId=\"14\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>" +
+                "<xf numFmtId=\"4\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyNumberFormat=\"1\"/>" +
+                "</cellXfs></styleSheet>");
+            
+            StringBuilder sheets = new StringBuilder();
+            StringBuilder sheetRels = new StringBuilder();
+            StringBuilder sheetTypes = new StringBuilder();
+            for (int i = 1; i <= sheetCount; i++) {
+                sheets.append("<sheet name=\"").append(escape(sheetName(i)))
+                      .append("\" sheetId=\"").append(i).append("\" r:id=\"rId").append(i).append("\"/>");
+                sheetRels.append("<Relationship Id=\"rId").append(i)
+                         .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\"")
+                         .append(" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+                sheetTypes.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+                          .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+            }
+            writePart("xl/workbook.xml",
+                "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" " +
+                "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">" +
+                "<sheets>" + sheets + "</sheets></workbook>");
+            writePart("xl/_rels/workbook.xml.rels",
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" + sheetRels +
+                "<Relationship Id=\"rId" + (sheetCount + 1) + "\" " +
+                "Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>" +
+                "<Relationship Id=\"rId" + (sheetCount + 2) + "\" " +
+                "Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings\" " +
+                "Target=\"sharedStrings.xml\"/></Relationships>");
+            writePart("_rels/.rels",
+                "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">" +
+                "<Relationship Id=\"rId1\" " +
+                "Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" " +
+                "Target=\"xl/workbook.xml\"/></Relationships>");
+            writePart("[Content_Types].xml",
+                "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">" +
+                "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>" +
+                "<Default Extension=\"xml\" ContentType=\"application/xml\"/>" +
+                "<Override PartName=\"/xl/workbook.xml\" " +
+                "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>" +
+                "<Override PartName=\"/xl/styles.xml\" " +
+                "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>" +
+                "<Override PartName=\"/xl/sharedStrings.xml\" " +
+                "ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sharedStrings+xml\"/>" +
+                sheetTypes + "</Types>");
+        } finally {
+            zip.close();
+        }
+    }
+    
+    private String sheetName(int sheet) {
+        return sheet == 1 ? sheetName : sheetName + " " + sheet;
+    }
+    
+    private void startSheet() throws IOException {
+        sheetCount++;
+        rowInSheet = 0;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        out.write("<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+        // Keep the header visible while scrolling
+        out.write("<sheetViews><sheetView workbookViewId=\"0\"><pane ySplit=\"1\" topLeftCell=\"A2\" " +
+                  "activePane=\"bottomLeft\" state=\"frozen\"/></sheetView></sheetViews>");
+        if (columnWidths.length > 0) {
+            out.write("<cols>");
+            for (int i = 0; i < columnWidths.length; i++) {
+                out.write("<col min=\"" + (i + 1) + "\" max=\"" + (i + 1) + "\" width=\"" +
+                          columnWidths[i] + "\" customWidth=\"1\"/>");
+            }
+            out.write("</cols>");
+        }
+        out.write("<sheetData>");
+    }
+    
+    private void endSheet() throws IOException {
+        endRowIfOpen();
+        out.write("</sheetData></worksheet>");
+        out.flush();
+        zip.closeEntry();
+    }
+    
+    private void writeHeader() throws IOException {
+        endRowIfOpen();
+        rowInSheet++;
+        out.write("<row r=\"");
+        out.write(Integer.toString(rowInSheet));
+        out.write("\">");
+        for (String title : header) {
+            out.write("<c t=\"inlineStr\" s=\"" + STYLE_HEADER + "\"><is>");
+            writeText(title);
+            out.write("</is></c>");
+        }
+        out.write("</row>");
+    }
+    
+    private void endRowIfOpen() throws IOException {
+        if (rowOpen) {
+            out.write("</row>");
+            rowOpen = false;
+        }
+    }
+    
+    private XlsxWriter emptyCell() throws IOException {
+        out.write("<c/>");
+        return this;
+    }
+    
+    private void writeSharedStrings() throws IOException {
+        zip.putNextEntry(new ZipEntry("xl/sharedStrings.xml"));
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        out.write("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" count=\"" +
+                  sharedStringRefs + "\" uniqueCount=\"" + sharedStringOrder.size() + "\">");
+        for (String value : sharedStringOrder) {
+            out.write("<si>");
+            writeText(value);
+            out.write("</si>");
+        }
+        out.write("</sst>");
+        out.flush();
+        zip.closeEntry();
+    }
+    
+    private void writePart(String name, String xml) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        out.write(xml);
+        out.flush();
+        zip.closeEntry();
+    }
+    
+    /**
+     * Write a &lt;t&gt; element, keeping edge whitespace and escaping markup
+     */
+    private void writeText(String value) throws IOException {
+        boolean preserve = !value.isEmpty() && (Character.isWhitespace(value.charAt(0))
+            || Character.isWhitespace(value.charAt(value.length() - 1)));
+        out.write(preserve ? "<t xml:space=\"preserve\">" : "<t>");
+        writeEscaped(value);
+        out.write("</t>");
+    }
+    
+    private void writeEscaped(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': out.write("&amp;"); break;
+                case '<': out.write("&lt;"); break;
+                case '>': out.write("&gt;"); break;
+                case '"': out.write("&quot;"); break;
+                // A literal CR would be normalised to LF by XML parsers
+                case '\r': out.write("&#13;"); break;
+                default:
+                    // XML 1.0 cannot carry other control characters at all
+                    if (c >= 0x20 || c == '\t' || c == '\n') {
+                        out.write(c);
+                    }
+            }
+        }
+    }
+    
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
+
+/**
+ * CSV export that formats date-range chunks on a worker pool
+ * 
+ * The user's per-day row counts are read first and the date range is cut,
+ * newest first, into chunks of about CHUNK_ROWS rows; only a single day
+ * with more rows than that makes a bigger chunk. Each worker streams its
+ * chunk from its own connection and formats it into memory,
+ * gzip-compressing it as an independent gzip member when requested. The
+ * calling thread writes finished chunks to the file in order. A gzip file
+ * made of concatenated members is a valid gzip stream (RFC 1952) that
+ * gunzip and GZIPInputStream read as one file.
+ * 
+ * At most two chunks per worker are in flight, so memory is bounded by
+ * CHUNK_ROWS and the worker count rather than the export size.
+ */
+final class ParallelExporter implements AutoCloseable {
+    // About 2 MB of formatted CSV per chunk
+    static final int CHUNK_ROWS = 20_000;
+    private static final int CHUNK_BUFFER_BYTES = 1 << 16;
+    
+    private final DatabaseManager db;
+    private final int parallelism;
+    private final ExecutorService workers;
+    
+    /**
+     * Use one worker per core, leaving half the connection pool for other work
+     */
+    public ParallelExporter(DatabaseManager db) {
+        this(db, Math.min(Runtime.getRuntime().availableProcessors(), db.getMaxPoolSize() / 2));
+    }
+    
+    public ParallelExporter(DatabaseManager db, int parallelism) {
+        this.db = db;
+        this.parallelism = Math.max(1, parallelism);
+        this.workers = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread t = new Thread(r, "fiscalforge-export");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**
+     * Export a user's transactions to a CSV file, newest first
+     * 
+     * @param userId User's ID
+     * @param filePath Path to save the file
+     * @param gzip true to gzip-compress the output
+     * @return true if successful, false otherwise
+     */
+    public boolean exportCsv(int userId, String filePath, boolean gzip) {
+        Deque<Future<ByteArrayOutputStream>> inFlight = new ArrayDeque<>();
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            OutputStream out = Channels.newOutputStream(channel);
+            formatChunk(gzip, DatabaseManager::writeCsvHeader).writeTo(out);
+            
+            db.resolveCategoryNames(db.queryCategoryIds(userId));
+            Iterator<LocalDate[]> chunks = split(db.queryDailyCounts(userId), CHUNK_ROWS).iterator();
+            while (chunks.hasNext() || !inFlight.isEmpty()) {
+                while (chunks.hasNext() && inFlight.size() < parallelism * 2) {
+                    LocalDate[] chunk = chunks.next();
+                    inFlight.add(workers.submit(() -> formatChunk(gzip, writer ->
+                        db.writeCsvRows(userId, chunk[0], chunk[1], writer))));
+                }
+                // writeTo hands the buffer to the channel without another copy
+                inFlight.poll().get().writeTo(out);
+            }
+            return true;
+            
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            return false;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            for (Future<ByteArrayOutputStream> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Stop the workers; running exports fail
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+    
+    /**
+     * Cut a user's days into chunks of about maxRows rows, newest first
+     * 
+     * Chunks are contiguous, so a day without rows when the counts were
+     * read is still covered by the chunk around it.
+     * 
+     * @param dailyCounts [epoch day, count] pairs, newest day first
+     * @return Chunks as inclusive [from, to] pairs
+     */
+    static List<LocalDate[]> split(List<long[]> dailyCounts, int maxRows) {
+        List<LocalDate[]> chunks = new ArrayList<>();
+        if (dailyCounts.isEmpty()) {
+            return chunks;
+        }
+        
+        long to = dailyCounts.get(0)[0];
+        long rows = 0;
+        for (int i = 0; i < dailyCounts.size(); i++) {
+            long[] day = dailyCounts.get(i);
+            if (rows > 0 && rows + day[1] > maxRows) {
+                // Close the chunk just above this day
+                chunks.add(new LocalDate[] { LocalDate.ofEpochDay(day[0] + 1), LocalDate.ofEpochDay(to) });
+                to = day[0];
+                rows = 0;
+            }
+            rows += day[1];
+        }
+        long first = dailyCounts.get(dailyCounts.size() - 1)[0];
+        chunks.add(new LocalDate[] { LocalDate.ofEpochDay(first), LocalDate.ofEpochDay(to) });
+        return chunks;
+    }
+    
+    /**
+     * Writes part of the export into a chunk's CsvWriter
+     */
+    private interface ChunkBody {
+        void writeTo(CsvWriter writer) throws SQLException, IOException;
+    }
+    
+    /**
+     * Format one chunk into memory, as its own gzip member if compressing
+     */
+    private static ByteArrayOutputStream formatChunk(boolean gzip, ChunkBody body)
+            throws SQLException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(CHUNK_BUFFER_BYTES);
+        OutputStream sink = gzip ? new GZIPOutputStream(bytes, CHUNK_BUFFER_BYTES) : bytes;
+        try (CsvWriter writer = new CsvWriter(Channels.newChannel(sink), CHUNK_BUFFER_BYTES)) {
+            body.writeTo(writer);
+        }
+        return bytes;
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// IMPORT CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * A row that could not be imported
+ */
+class ImportError {
+    private final long line;
+    private final String message;
+    
+    public ImportError(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+    
+    /**
+     * @return 1-based line in the file where the row starts
+     */
+    public long getLine() { return line; }
+    public String getMessage() { return message; }
+    
+    @Override
+    public String toString() {
+        return "Line " + line + ": " + message;
+    }
+}
+
+/**
+ * Outcome of an import
+ * 
+ * Every rejected row is counted, but only the first
+ * CsvImporter.MAX_REPORTED_ERRORS are kept with their reasons.
+ */
+class ImportResult {
+    private final long rowsRead;
+    private final long rowsImported;
+    private final long rowsSkipped;
+    private final long rowsRejected;
+    private final List<ImportError> errors;
+    
+    public ImportResult(long rowsRead, long rowsImported, long rowsRejected, List<ImportError> errors) {
+        this(rowsRead, rowsImported, 0, rowsRejected, errors);
+    }
+    
+    public ImportResult(long rowsRead, long rowsImported, long rowsSkipped, long rowsRejected,
+                        List<ImportError> errors) {
+        this.rowsRead = rowsRead;
+        this.rowsImported = rowsImported;
+        this.rowsSkipped = rowsSkipped;
+        this.rowsRejected = rowsRejected;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+    
+    public long getRowsRead() { return rowsRead; }
+    public long getRowsImported() { return rowsImported; }
+    
+    /**
+     * @return Rows not imported because the user already has them
+     */
+    public long getRowsSkipped() { return rowsSkipped; }
+    public long getRowsRejected() { return rowsRejected; }
+    public List<ImportError> getErrors() { return errors; }
+}
+
+/**
+ * Receives progress from a running import
+ * 
+ * Called on the importing thread after each batch is inserted. Progress
+ * is done out of total: bytes for CSV files, entries for statements.
+ */
+interface ImportProgressListener {
+    void onProgress(long done, long total, long rowsImported);
+}
+
+/**
+ * Rejected rows of one import, shared by its parsing and inserting threads
+ * 
+ * Every rejection is counted; the first CsvImporter.MAX_REPORTED_ERRORS
+ * are kept with their reasons.
+ */
+final class ImportErrors {
+    private final List<ImportError> reported = new ArrayList<>();
+    private long count;
+    
+    synchronized void add(long line, String message) {
+        count++;
+        if (reported.size() < CsvImporter.MAX_REPORTED_ERRORS) {
+            reported.add(new ImportError(line, message));
+        }
+    }
+    
+    synchronized long count() {
+        return count;
+    }
+    
+    /**
+     * @return Kept errors in file order
+     */
+    synchronized List<ImportError> reported() {
+        List<ImportError> sorted = new ArrayList<>(reported);
+        sorted.sort(Comparator.comparingLong(ImportError::getLine));
+        return sorted;
+    }
+}
+
+/**
+ * Category lookups for one import
+ * 
+ * Categories are shared by all users and created on demand, so one import
+ * may create at most MAX_NEW_CATEGORIES of them. Rows naming further new
+ * categories are rejected rather than filling the categories table.
+ */
+final class ImportCategories {
+    static final int MAX_NEW_CATEGORIES = 100;
+    
+    private final DatabaseManager db;
+    private final Map<String, Integer> ids = new HashMap<>();
+    private int created;
+    
+    ImportCategories(DatabaseManager db) {
+        this.db = db;
+    }
+    
+    /**
+     * @return Category id, or CategoryDictionary.NO_ID if it cannot be used
+     */
+    int idOf(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        boolean known = db.getCategories().idOf(name) != CategoryDictionary.NO_ID;
+        if (!known && created >= MAX_NEW_CATEGORIES) {
+            return CategoryDictionary.NO_ID;
+        }
+        id = db.getCategoryId(name);
+        if (!known && id != CategoryDictionary.NO_ID) {
+            created++;
+        }
+        ids.put(name, id);
+        return id;
+    }
+    
+    /**
+     * @return Why a row naming the category was rejected
+     */
+    String problem(String name) {
+        return created >= MAX_NEW_CATEGORIES
+            ? "Too many new categories (at most " + MAX_NEW_CATEGORIES + " per import): \"" + name + "\""
+            : "Could not create category \"" + name + "\"";
+    }
+}
+
+/**
+ * Bloom filter over transaction content hashes
+ * 
+ * Answers "definitely not stored" for most new rows of an import, so
+ * only the rows it may have seen are looked up in the database. Bit
+ * positions come from double hashing the two 64-bit halves of the hash,
+ * which is already uniformly distributed. Not thread-safe.
+ */
+final class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    
+    /**
+     * @param expectedInsertions Number of hashes the filter will hold
+     * @param falsePositiveRate Wanted rate of false "may contain" answers
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(expectedInsertions, 1);
+        double m = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long words = Math.min(Math.max(((long) Math.ceil(m) + 63) / 64, 1), Integer.MAX_VALUE - 8);
+        this.bits = new long[(int) words];
+        this.bitCount = words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+    
+    void add(byte[] hash) {
+        ByteBuffer halves = ByteBuffer.wrap(hash);
+        long h1 = halves.getLong(0);
+        long h2 = halves.getLong(8);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+    
+    /**
+     * @return false if the hash was certainly never added
+     */
+    boolean mightContain(byte[] hash) {
+        ByteBuffer halves = ByteBuffer.wrap(hash);
+        long h1 = halves.getLong(0);
+        long h2 = halves.getLong(8);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
+
+/**
+ * Source ids for rows that carry no id of their own
+ * 
+ * The n-th row of a file with a given date, signed amount and description
+ * becomes scope#n. Importing the file again, or an overlapping statement,
+ * reproduces the same ids and so the same content hashes, while rows that
+ * genuinely repeat within a file stay distinct. Ids must be taken in file
+ * order.
+ * 
+ * The scope names the account the file belongs to: the same coffee bought
+ * on two cards is one row in each account, not a duplicate.
+ */
+final class OccurrenceCounter {
+    static final String DEFAULT_ACCOUNT = "Default";
+    
+    /**
+     * @return The account name as used in source ids; blank means DEFAULT_ACCOUNT
+     */
+    static String account(String name) {
+        return name == null || name.trim().isEmpty() ? DEFAULT_ACCOUNT : name.trim();
+    }
+    
+    private final Map<String, Integer> counts = new HashMap<>();
+    
+    String next(String scope, LocalDate date, long signedAmountMinor, String description) {
+        String key = scope + '\n' + date + '\n' + signedAmountMinor + '\n'
+                     + DatabaseManager.normalizeDescription(description);
+        return scope + '#' + counts.merge(key, 1, Integer::sum);
+    }
+}
+
+/**
+ * Imports transactions from a CSV bank statement or a FiscalForge export
+ * 
+ * The file is memory-mapped and parsed in place: fields are byte ranges
+ * of the mapping, and dates, amounts, types and known categories are read
+ * from those bytes without building a String. Only descriptions, which
+ * the Transaction keeps, are decoded.
+ * 
+ * Parsing runs on its own thread and hands batches of validated rows to
+ * the calling thread, which inserts them through addTransactions while
+ * the next batch is parsed.
+ * 
+ * Columns are matched by header name, case-insensitively: Date and Amount
+ * are required; Type, Category and Description (or Memo) are optional.
+ * Dates may be YYYY-MM-DD, DD/MM/YYYY or MM/DD/YYYY; the order is
+ * detected once per file. Amounts may carry a currency symbol, thousands
+ * separators or parentheses for negatives. Without a Type column a
+ * negative amount is an expense and a positive one income. With one, the
+ * file's sign convention is detected and a row signed against it is
+ * rejected rather than flipped. Amounts are stored unsigned. A missing
+ * category becomes "Other".
+ * 
+ * Importing a file again, or one that overlaps an earlier import of the
+ * same account, skips the rows already stored: each row's source id is the
+ * account plus its occurrence among identical rows of the file, so its
+ * content hash is reproducible.
+ */
+final class CsvImporter {
+    static final int MAX_REPORTED_ERRORS = 100;
+    private static final int BATCH_ROWS = 5_000;
+    // Parsed batches waiting for insertion; bounds memory if inserts lag
+    private static final int QUEUED_BATCHES = 4;
+    // Largest amount a DECIMAL(10, 2) column holds, in minor units
+    private static final long MAX_AMOUNT_MINOR = 9_999_999_999L;
+    private static final String DEFAULT_CATEGORY = "Other";
+    // Known category names are matched as bytes up to this many names
+    private static final int CACHED_CATEGORY_NAMES = 256;
+    // Sizes the duplicate filter before the rows are counted
+    private static final int ESTIMATED_ROW_BYTES = 48;
+    // Typed expense rows sampled to learn how the file signs amounts
+    private static final int SIGN_SAMPLE_ROWS = 10_000;
+    
+    private static final int DATE = 0;
+    private static final int TYPE = 1;
+    private static final int CATEGORY = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int AMOUNT = 4;
+    
+    private final DatabaseManager db;
+    
+    public CsvImporter(DatabaseManager db) {
+        this.db = db;
+    }
+    
+    /**
+     * Import a CSV file for a user
+     * 
+     * @param userId User's ID
+     * @param path File to read
+     * @param account Account or card the file is a statement of; rows are
+     *                only duplicates of earlier imports of the same account
+     * @param listener Progress listener, may be null
+     * @return Counts, duplicates skipped and the reasons rows were rejected
+     * @throws IOException if the file cannot be read
+     */
+    public ImportResult importFile(int userId, Path path, String account, ImportProgressListener listener)
+            throws IOException {
+        String scope = "csv:" + OccurrenceCounter.account(account);
+        ImportErrors errors = new ImportErrors();
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+        ExecutorService parserThread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "fiscalforge-import");
+            t.setDaemon(true);
+            return t;
+        });
+        
+        try (MappedCsvReader reader = new MappedCsvReader(path)) {
+            Future<Long> parsed = parserThread.submit(() -> parse(userId, scope, path, reader, queue, errors));
+            BloomFilter seen = db.loadContentHashFilter(userId, reader.size() / ESTIMATED_ROW_BYTES);
+            
+            long imported = 0;
+            long duplicates = 0;
+            try {
+                for (Batch batch = queue.take(); batch != Batch.END; batch = queue.take()) {
+                    BatchInsertResult result = db.addTransactions(batch.rows, seen);
+                    imported += result.getInsertedCount();
+                    duplicates += result.getDuplicateCount();
+                    for (BatchFailure failure : result.getFailures()) {
+                        errors.add(batch.lines[failure.getIndex()], failure.getReason());
+                    }
+                    if (listener != null) {
+                        listener.onProgress(batch.bytesRead, reader.size(), imported);
+                    }
+                }
+                long rowsRead = parsed.get();
+                return new ImportResult(rowsRead, imported, duplicates, errors.count(), errors.reported());
+                
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Import failed", cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                parsed.cancel(true);
+                throw new InterruptedIOException("Import interrupted");
+            }
+        } finally {
+            parserThread.shutdownNow();
+        }
+    }
+    
+    /**
+     * Parse and validate every row, queueing batches for insertion
+     * 
+     * @return Number of data rows read
+     */
+    private long parse(int userId, String scope, Path path, MappedCsvReader reader, BlockingQueue<Batch> queue,
+                       ImportErrors errors)
+            throws IOException, InterruptedException {
+        try {
+            if (!reader.next()) {
+                return 0;
+            }
+            int[] columns = mapColumns(reader);
+            if (columns[DATE] < 0 || columns[AMOUNT] < 0) {
+                errors.add(reader.line(), "Header must have Date and Amount columns");
+                return 0;
+            }
+            
+            RowParser rows = new RowParser(userId, scope, columns);
+            try (MappedCsvReader scan = new MappedCsvReader(path)) {
+                rows.detectFormat(scan);
+            }
+            long rowsRead = 0;
+            Batch batch = new Batch();
+            while (reader.next()) {
+                rowsRead++;
+                String problem = rows.parse(reader);
+                if (problem != null) {
+                    errors.add(reader.line(), problem);
+                } else {
+                    batch.add(rows.transaction, reader.line());
+                }
+                if (batch.rows.size() == BATCH_ROWS) {
+                    batch.bytesRead = reader.position();
+                    queue.put(batch);
+                    batch = new Batch();
+                }
+            }
+            if (!batch.rows.isEmpty()) {
+                batch.bytesRead = reader.position();
+                queue.put(batch);
+            }
+            return rowsRead;
+            
+        } finally {
+            // Always release the inserting thread, even if parsing failed
+            queue.put(Batch.END);
+        }
+    }
+    
+    /**
+     * @return Field index of each column, or -1 if absent
+     */
+    private static int[] mapColumns(MappedCsvReader header) {
+        int[] columns = { -1, -1, -1, -1, -1 };
+        for (int i = 0; i < header.fieldCount(); i++) {
+            switch (header.string(i).trim().toLowerCase()) {
+                case "date": columns[DATE] = i; break;
+                case "type": columns[TYPE] = i; break;
+                case "category": columns[CATEGORY] = i; break;
+                case "description":
+                case "memo": columns[DESCRIPTION] = i; break;
+                case "amount": columns[AMOUNT] = i; break;
+                default: break;
+            }
+        }
+        return columns;
+    }
+    
+    /**
+     * Turns one record into a validated, normalised Transaction
+     */
+    private final class RowParser {
+        private final int userId;
+        private final String scope;
+        private final int[] columns;
+        private final StringBuilder amount = new StringBuilder(24);
+        // Numeric groups of the date being parsed and their digit counts
+        private final int[] dateParts = new int[3];
+        private final int[] dateDigits = new int[3];
+        private boolean dayFirst = true;
+        private boolean signedExpenses;
+        private final List<byte[]> categoryNames = new ArrayList<>();
+        private final List<Integer> categoryIds = new ArrayList<>();
+        private final OccurrenceCounter occurrences = new OccurrenceCounter();
+        private final ImportCategories categories = new ImportCategories(db);
+        private int defaultCategoryId = CategoryDictionary.NO_ID;
+        Transaction transaction;
+        
+        RowParser(int userId, String scope, int[] columns) {
+            this.userId = userId;
+            this.scope = scope;
+            this.columns = columns;
+        }
+        
+        /**
+         * Learn the file's date order and amount signs from its rows
+         * 
+         * Dates that do not start with a four-digit year are day-first
+         * unless a row shows a month over 12 in the first place or a day
+         * over 12 in the second, as QifParser does. With a Type column,
+         * expenses are taken to be written as negative amounts if most
+         * sampled expense rows are negative.
+         * 
+         * @param scan Reader over the same file, positioned before the header
+         */
+        void detectFormat(MappedCsvReader scan) throws IOException {
+            if (!scan.next()) {
+                return;
+            }
+            int typeField = columns[TYPE];
+            boolean dateKnown = false;
+            int sampled = typeField < 0 ? SIGN_SAMPLE_ROWS : 0;
+            long negativeExpenses = 0;
+            while ((!dateKnown || sampled < SIGN_SAMPLE_ROWS) && scan.next()) {
+                if (!dateKnown && splitDate(scan, columns[DATE]) && dateDigits[0] != 4) {
+                    if (dateParts[0] > 12) {
+                        dayFirst = true;
+                        dateKnown = true;
+                    } else if (dateParts[1] > 12) {
+                        dayFirst = false;
+                        dateKnown = true;
+                    }
+                }
+                if (sampled < SIGN_SAMPLE_ROWS && typeField < scan.fieldCount()
+                        && parseType(scan, typeField) == TransactionType.EXPENSE) {
+                    try {
+                        long amountMinor = parseAmount(scan, columns[AMOUNT]);
+                        if (amountMinor != 0) {
+                            sampled++;
+                            negativeExpenses += amountMinor < 0 ? 1 : 0;
+                        }
+                    } catch (NumberFormatException e) {
+                        // Reported when the row is parsed
+                    }
+                }
+            }
+            signedExpenses = negativeExpenses * 2 > sampled;
+        }
+        
+        /**
+         * @return null if the row is valid, otherwise the reason it is not
+         */
+        String parse(MappedCsvReader row) {
+            LocalDate date = parseDate(row, columns[DATE]);
+            if (date == null) {
+                return "Invalid date \"" + field(row, columns[DATE]) + "\"";
+            }
+            
+            long amountMinor;
+            try {
+                amountMinor = parseAmount(row, columns[AMOUNT]);
+            } catch (NumberFormatException e) {
+                return "Invalid amount \"" + field(row, columns[AMOUNT]) + "\"";
+            }
+            if (amountMinor == 0) {
+                return "Amount is zero";
+            }
+            if (Math.abs(amountMinor) > MAX_AMOUNT_MINOR) {
+                return "Amount out of range \"" + field(row, columns[AMOUNT]) + "\"";
+            }
+            
+            TransactionType type;
+            if (columns[TYPE] < 0 || row.isEmpty(columns[TYPE])) {
+                type = amountMinor < 0 ? TransactionType.EXPENSE : TransactionType.INCOME;
+            } else {
+                type = parseType(row, columns[TYPE]);
+                if (type == null) {
+                    return "Unknown type \"" + field(row, columns[TYPE]) + "\"";
+                }
+                // A sign against the file's convention is a refund or
+                // reversal; storing it unsigned would turn it around
+                if ((amountMinor < 0) != (signedExpenses && type == TransactionType.EXPENSE)) {
+                    return "Amount \"" + field(row, columns[AMOUNT]) + "\" has the wrong sign for type \"" +
+                           field(row, columns[TYPE]) + "\"";
+                }
+            }
+            
+            int categoryId = categoryId(row, columns[CATEGORY]);
+            if (categoryId == CategoryDictionary.NO_ID) {
+                return categories.problem(field(row, columns[CATEGORY]).trim());
+            }
+            
+            String description = columns[DESCRIPTION] < 0 ? "" : row.string(columns[DESCRIPTION]).trim();
+            transaction = new Transaction(0, userId, date, type, categoryId, description, Math.abs(amountMinor));
+            transaction.setSourceId(occurrences.next(scope, date,
+                DatabaseManager.signedAmount(type, Math.abs(amountMinor)), description));
+            return null;
+        }
+        
+        private LocalDate parseDate(MappedCsvReader row, int field) {
+            if (!splitDate(row, field)) {
+                return null;
+            }
+            int[] parts = dateParts;
+            int[] digits = dateDigits;
+            if (digits[0] != 4 && digits[2] != 2 && digits[2] != 4) {
+                return null;
+            }
+            try {
+                if (digits[0] == 4) {
+                    return LocalDate.of(parts[0], parts[1], parts[2]);
+                }
+                int year = digits[2] == 2 ? 2000 + parts[2] : parts[2];
+                return dayFirst ? LocalDate.of(year, parts[1], parts[0]) : LocalDate.of(year, parts[0], parts[1]);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+        
+        /**
+         * Split a date field into three numeric groups separated by '-', '/'
+         * or '.', into dateParts and dateDigits
+         * 
+         * @return false if the field is not shaped like a date
+         */
+        private boolean splitDate(MappedCsvReader row, int field) {
+            if (field >= row.fieldCount()) {
+                return false;
+            }
+            int[] parts = dateParts;
+            int[] digits = dateDigits;
+            Arrays.fill(parts, 0);
+            Arrays.fill(digits, 0);
+            int part = 0;
+            int start = row.start(field);
+            int end = row.end(field);
+            while (start < end && row.byteAt(start) == ' ') start++;
+            while (end > start && row.byteAt(end - 1) == ' ') end--;
+            for (int i = start; i < end; i++) {
+                byte b = row.byteAt(i);
+                if (b >= '0' && b <= '9') {
+                    if (++digits[part] > 4) return false;
+                    parts[part] = parts[part] * 10 + (b - '0');
+                } else if ((b == '-' || b == '/' || b == '.') && part < 2 && digits[part] > 0) {
+                    part++;
+                } else {
+                    return false;
+                }
+            }
+            return part == 2 && digits[2] > 0;
+        }
+        
+        private long parseAmount(MappedCsvReader row, int field) {
+            amount.setLength(0);
+            if (field >= row.fieldCount()) {
+                throw new NumberFormatException("Missing amount");
+            }
+            boolean parenthesised = false;
+            for (int i = row.start(field); i < row.end(field); i++) {
+                byte b = row.byteAt(i);
+                if (b == ',' || b == ' ' || b == '$') {
+                    continue;
+                } else if (b == (byte) 0xC2 && i + 1 < row.end(field) && row.byteAt(i + 1) == (byte) 0xA3) {
+                    i++; // £
+                } else if (b == (byte) 0xE2 && i + 2 < row.end(field) && row.byteAt(i + 1) == (byte) 0x82
+                           && row.byteAt(i + 2) == (byte) 0xAC) {
+                    i += 2; // €
+                } else if (b == '(' && amount.length() == 0) {
+                    parenthesised = true;
+                } else if (b == ')' && parenthesised) {
+                    parenthesised = false;
+                    amount.insert(0, '-');
+                } else {
+                    amount.append((char) (b & 0xFF));
+                }
+            }
+            if (parenthesised) {
+                throw new NumberFormatException("Unbalanced parentheses");
+            }
+            return Money.parseMinor(amount);
+        }
+        
+        private TransactionType parseType(MappedCsvReader row, int field) {
+            for (TransactionType type : TransactionType.values()) {
+                if (row.equalsIgnoreCase(field, type.getLabel())) {
+                    return type;
+                }
+            }
+            return null;
+        }
+        
+        private int categoryId(MappedCsvReader row, int field) {
+            if (field < 0 || field >= row.fieldCount() || row.isEmpty(field)) {
+                if (defaultCategoryId == CategoryDictionary.NO_ID) {
+                    defaultCategoryId = categories.idOf(DEFAULT_CATEGORY);
+                }
+                return defaultCategoryId;
+            }
+            // Statements repeat a handful of categories, so match them as bytes
+            for (int i = 0; i < categoryNames.size(); i++) {
+                if (row.bytesEqual(field, categoryNames.get(i))) {
+                    return categoryIds.get(i);
+                }
+            }
+            int id = categories.idOf(row.string(field).trim());
+            if (id != CategoryDictionary.NO_ID && categoryNames.size() < CACHED_CATEGORY_NAMES) {
+                categoryNames.add(row.bytes(field));
+                categoryIds.add(id);
+            }
+            return id;
+        }
+        
+        private String field(MappedCsvReader row, int field) {
+            return field < row.fieldCount() ? row.string(field) : "";
+        }
+    }
+    
+    /**
+     * Rows parsed together and inserted together
+     */
+    private static final class Batch {
+        static final Batch END = new Batch();
+        
+        final List<Transaction> rows = new ArrayList<>(BATCH_ROWS);
+        long[] lines = new long[BATCH_ROWS];
+        long bytesRead;
+        
+        void add(Transaction transaction, long line) {
+            lines[rows.size()] = line;
+            rows.add(transaction);
+        }
+    }
+}
+
+/**
+ * RFC 4180 record reader over a memory-mapped file
+ * 
+ * The file is mapped in windows of up to WINDOW_BYTES; a record that runs
+ * past the end of a window is re-read from a window starting at the
+ * record. Fields are exposed as byte ranges of the current window, valid
+ * until the next call to next(). Accepts CRLF, LF or CR line endings and
+ * skips a UTF-8 byte order mark and blank lines.
+ */
+final class MappedCsvReader implements Closeable {
+    private static final long WINDOW_BYTES = 1L << 28;
+    
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private int pos;
+    private long nextLine = 1;
+    private long line;
+    
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private byte[] scratch = new byte[256];
+    
+    MappedCsvReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        map(0);
+        if (size >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB
+                && window.get(2) == (byte) 0xBF) {
+            pos = 3;
+        }
+    }
+    
+    /**
+     * Advance to the next non-blank record
+     * 
+     * @return false at end of file
+     */
+    boolean next() throws IOException {
+        while (windowStart + pos < size) {
+            int recordStart = pos;
+            long recordLine = nextLine;
+            if (!scanRecord()) {
+                if (recordStart == 0) {
+                    throw new IOException("Record at line " + recordLine + " is too large");
+                }
+                map(windowStart + recordStart);
+                nextLine = recordLine;
+                continue;
+            }
+            line = recordLine;
+            if (fieldCount > 1 || quoted[0] || ends[0] > starts[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return 1-based line where the current record starts
+     */
+    long line() { return line; }
+    
+    /**
+     * @return Bytes consumed so far
+     */
+    long position() { return windowStart + pos; }
+    
+    long size() { return size; }
+    
+    int fieldCount() { return fieldCount; }
+    
+    int start(int field) { return starts[field]; }
+    int end(int field) { return ends[field]; }
+    byte byteAt(int index) { return window.get(index); }
+    
+    boolean isEmpty(int field) {
+        for (int i = starts[field]; i < ends[field]; i++) {
+            if (window.get(i) != ' ') return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Compare a field, ignoring surrounding spaces, to ASCII text ignoring case
+     */
+    boolean equalsIgnoreCase(int field, String ascii) {
+        int start = starts[field];
+        int end = ends[field];
+        while (start < end && window.get(start) == ' ') start++;
+        while (end > start && window.get(end - 1) == ' ') end--;
+        if (end - start != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if (Character.toLowerCase((char) window.get(start + i)) != Character.toLowerCase(ascii.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Compare a field's raw bytes to bytes returned by bytes()
+     */
+    boolean bytesEqual(int field, byte[] bytes) {
+        if (ends[field] - starts[field] != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (window.get(starts[field] + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return Copy of a field's raw bytes
+     */
+    byte[] bytes(int field) {
+        byte[] copy = new byte[ends[field] - starts[field]];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = window.get(starts[field] + i);
+        }
+        return copy;
+    }
+    
+    /**
+     * Decode a field as UTF-8, collapsing doubled quotes in quoted fields
+     */
+    String string(int field) {
+        int length = ends[field] - starts[field];
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int n = 0;
+        for (int i = starts[field]; i < ends[field]; i++) {
+            byte b = window.get(i);
+            scratch[n++] = b;
+            if (b == '"' && quoted[field]) {
+                i++;
+            }
+        }
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_BYTES, size - start));
+        pos = 0;
+    }
+    
+    /**
+     * Read one record from pos
+     * 
+     * @return false if the record runs past the end of a window that is not
+     *         the end of the file
+     */
+    private boolean scanRecord() {
+        int limit = window.limit();
+        boolean atEof = windowStart + limit == size;
+        int p = pos;
+        fieldCount = 0;
+        
+        while (true) {
+            if (p < limit && window.get(p) == '"') {
+                int start = ++p;
+                boolean closed = false;
+                while (p < limit) {
+                    byte b = window.get(p);
+                    if (b == '"') {
+                        if (p + 1 >= limit && !atEof) {
+                            return false;
+                        }
+                        if (p + 1 < limit && window.get(p + 1) == '"') {
+                            p += 2;
+                            continue;
+                        }
+                        closed = true;
+                        break;
+                    }
+                    if (b == '\n') {
+                        nextLine++;
+                    }
+                    p++;
+                }
+                if (!closed && !atEof) {
+                    return false;
+                }
+                addField(start, p, true);
+                if (closed) {
+                    p++;
+                }
+                // Anything between the closing quote and the separator is dropped
+                while (p < limit && window.get(p) != ',' && window.get(p) != '\n' && window.get(p) != '\r') {
+                    p++;
+                }
+            } else {
+                int start = p;
+                while (p < limit) {
+                    byte b = window.get(p);
+                    if (b == ',' || b == '\n' || b == '\r') break;
+                    p++;
+                }
+                addField(start, p, false);
+            }
+            
+            if (p >= limit) {
+                if (!atEof) {
+                    return false;
+                }
+                pos = p;
+                return true;
+            }
+            byte b = window.get(p++);
+            if (b == ',') {
+                continue;
+            }
+            if (b == '\r') {
+                if (p >= limit && !atEof) {
+                    return false;
+                }
+                if (p < limit && window.get(p) == '\n') {
+                    p++;
+                }
+            }
+            nextLine++;
+            pos = p;
+            return true;
+        }
+    }
+    
+    private void addField(int start, int end, boolean isQuoted) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            quoted = Arrays.copyOf(quoted, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        quoted[fieldCount] = isQuoted;
+        fieldCount++;
+    }
+}
+
+/**
+ * One transaction read from an OFX or QIF bank statement
+ * 
+ * The amount is signed as the bank reports it: negative for money out.
+ */
+class StatementEntry {
+    private final long line;
+    private final String account;
+    private final String fitId;
+    private final LocalDate date;
+    private final long signedAmountMinor;
+    private final String description;
+    private final String category;
+    
+    public StatementEntry(long line, String account, String fitId, LocalDate date, long signedAmountMinor,
+                          String description, String category) {
+        this.line = line;
+        this.account = account;
+        this.fitId = fitId;
+        this.date = date;
+        this.signedAmountMinor = signedAmountMinor;
+        this.description = description;
+        this.category = category;
+    }
+    
+    /**
+     * @return 1-based line in the file where the entry starts
+     */
+    public long getLine() { return line; }
+    
+    /**
+     * @return Account the entry belongs to, or null if the file does not say
+     */
+    public String getAccount() { return account; }
+    
+    /**
+     * @return Bank's unique id for the entry (OFX FITID), or null
+     */
+    public String getFitId() { return fitId; }
+    
+    public LocalDate getDate() { return date; }
+    public long getSignedAmountMinor() { return signedAmountMinor; }
+    public String getDescription() { return description; }
+    
+    /**
+     * @return Category name from the file, or null if it has none
+     */
+    public String getCategory() { return category; }
+}
+
+/**
+ * Byte range of a statement file that can be parsed independently
+ */
+final class StatementSection {
+    final int start;
+    final int end;
+    final long firstLine;
+    
+    StatementSection(int start, int end, long firstLine) {
+        this.start = start;
+        this.end = end;
+        this.firstLine = firstLine;
+    }
+}
+
+/**
+ * Streaming parser for one bank statement format
+ * 
+ * A parser first splits the file into sections (one per account
+ * statement) with a cheap byte scan; sections are then parsed
+ * independently, so different threads can parse them at once.
+ */
+interface StatementParser {
+    List<StatementSection> sections();
+    
+    /**
+     * Parse one section's entries in file order
+     * 
+     * @param section Section returned by sections()
+     * @param errors Receives entries that cannot be read
+     */
+    List<StatementEntry> parseSection(StatementSection section, ImportErrors errors);
+}
+
+/**
+ * OFX 1.x (SGML) and 2.x (XML) statement parser
+ * 
+ * Reads the STMTTRN entries of every bank (STMTTRNRS) and credit card
+ * (CCSTMTTRNRS) statement in the file; each statement is a section.
+ * Element values end at the next tag, so SGML elements without closing
+ * tags are read the same as XML ones.
+ */
+final class OfxParser implements StatementParser {
+    private static final byte[][] SECTION_TAGS = {
+        "<STMTTRNRS>".getBytes(StandardCharsets.US_ASCII),
+        "<CCSTMTTRNRS>".getBytes(StandardCharsets.US_ASCII)
+    };
+    
+    private final ByteBuffer file;
+    private final Charset charset;
+    
+    /**
+     * @param file Whole file; not modified
+     */
+    OfxParser(ByteBuffer file) {
+        this.file = file;
+        // OFX 1.x declares its code page in the plain-text header
+        this.charset = StatementImporter.indexOf(file, 0, Math.min(file.limit(), 512),
+                "CHARSET:1252".getBytes(StandardCharsets.US_ASCII)) >= 0
+            ? Charset.forName("windows-1252") : StandardCharsets.UTF_8;
+    }
+    
+    @Override
+    public List<StatementSection> sections() {
+        List<Integer> starts = new ArrayList<>();
+        List<Long> lines = new ArrayList<>();
+        long line = 1;
+        int limit = file.limit();
+        for (int p = 0; p < limit; p++) {
+            byte b = file.get(p);
+            if (b == '\n') {
+                line++;
+            } else if (b == '<') {
+                for (byte[] tag : SECTION_TAGS) {
+                    if (StatementImporter.startsWith(file, p, tag)) {
+                        starts.add(p);
+                        lines.add(line);
+                        break;
+                    }
+                }
+            }
+        }
+        
+        List<StatementSection> sections = new ArrayList<>();
+        if (starts.isEmpty()) {
+            sections.add(new StatementSection(0, limit, 1));
+        }
+        for (int i = 0; i < starts.size(); i++) {
+            int end = i + 1 < starts.size() ? starts.get(i + 1) : limit;
+            sections.add(new StatementSection(starts.get(i), end, lines.get(i)));
+        }
+        return sections;
+    }
+    
+    @Override
+    public List<StatementEntry> parseSection(StatementSection section, ImportErrors errors) {
+        List<StatementEntry> entries = new ArrayList<>();
+        long line = section.firstLine;
+        String account = null;
+        
+        // Current STMTTRN, if inside one
+        boolean inEntry = false;
+        long entryLine = 0;
+        String fitId = null;
+        String posted = null;
+        String amount = null;
+        String name = null;
+        String memo = null;
+        
+        int p = section.start;
+        while (p < section.end) {
+            byte b = file.get(p);
+            if (b == '\n') {
+                line++;
+            }
+            if (b != '<') {
+                p++;
+                continue;
+            }
+            
+            int close = p + 1;
+            while (close < section.end && file.get(close) != '>') {
+                close++;
+            }
+            String tag = StatementImporter.text(file, p + 1, close, StandardCharsets.US_ASCII).toUpperCase();
+            p = close + 1;
+            
+            if (tag.equals("STMTTRN")) {
+                inEntry = true;
+                entryLine = line;
+                fitId = posted = amount = name = memo = null;
+                continue;
+            }
+            if (tag.equals("/STMTTRN")) {
+                if (inEntry) {
+                    StatementEntry entry = toEntry(entryLine, account, fitId, posted, amount, name, memo, errors);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+                inEntry = false;
+                continue;
+            }
+            if (tag.startsWith("/") || tag.startsWith("?") || tag.startsWith("!")) {
+                continue;
+            }
+            
+            // Element value runs to the next tag
+            int valueEnd = p;
+            while (valueEnd < section.end && file.get(valueEnd) != '<') {
+                if (file.get(valueEnd) == '\n') {
+                    line++;
+                }
+                valueEnd++;
+            }
+            String value = StatementImporter.text(file, p, valueEnd, charset);
+            p = valueEnd;
+            if (value.isEmpty()) {
+                continue;
+            }
+            value = decodeEntities(value);
+            
+            switch (tag) {
+                case "ACCTID": account = value; break;
+                case "FITID": if (inEntry) fitId = value; break;
+                case "DTPOSTED": if (inEntry) posted = value; break;
+                case "TRNAMT": if (inEntry) amount = value; break;
+                case "NAME":
+                case "PAYEE": if (inEntry) name = value; break;
+                case "MEMO": if (inEntry) memo = value; break;
+                default: break;
+            }
+        }
+        if (inEntry) {
+            errors.add(entryLine, "Statement entry is not closed");
+        }
+        return entries;
+    }
+    
+    private static StatementEntry toEntry(long line, String account, String fitId, String posted, String amount,
+                                          String name, String memo, ImportErrors errors) {
+        // DTPOSTED is YYYYMMDD, optionally followed by a time and zone
+        LocalDate date = null;
+        if (posted != null && posted.length() >= 8) {
+            try {
+                date = LocalDate.of(Integer.parseInt(posted.substring(0, 4)),
+                                    Integer.parseInt(posted.substring(4, 6)),
+                                    Integer.parseInt(posted.substring(6, 8)));
+            } catch (NumberFormatException | DateTimeException e) {
+                date = null;
+            }
+        }
+        if (date == null) {
+            errors.add(line, "Invalid DTPOSTED \"" + (posted == null ? "" : posted) + "\"");
+            return null;
+        }
+        
+        long amountMinor;
+        try {
+            amountMinor = StatementImporter.parseAmount(amount == null ? "" : amount);
+        } catch (NumberFormatException e) {
+            errors.add(line, "Invalid TRNAMT \"" + (amount == null ? "" : amount) + "\"");
+            return null;
+        }
+        
+        return new StatementEntry(line, account, fitId, date, amountMinor,
+                                  StatementImporter.describe(name, memo), null);
+    }
+    
+    private static String decodeEntities(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                    .replace("&apos;", "'").replace("&nbsp;", " ").replace("&amp;", "&");
+    }
+}
+
+/**
+ * QIF (Quicken Interchange Format) statement parser
+ * 
+ * Every "!Type:" header starts a section; only bank, cash, credit card and
+ * other asset/liability sections hold transactions, the rest (categories,
+ * classes, memorised payees, investments) are skipped. Entries are lines
+ * of one-letter fields ending with "^".
+ * 
+ * QIF dates carry no order, so the whole file is checked once: a first
+ * number over 12 means day-first, a second number over 12 means
+ * month-first. Otherwise Quicken's D/M'YY style apostrophe implies
+ * month-first and anything else is read as day-first (UK).
+ */
+final class QifParser implements StatementParser {
+    private final ByteBuffer file;
+    private final Charset charset;
+    private final boolean dayFirst;
+    
+    QifParser(ByteBuffer file) {
+        this.file = file;
+        this.charset = StandardCharsets.UTF_8;
+        this.dayFirst = detectDayFirst();
+    }
+    
+    @Override
+    public List<StatementSection> sections() {
+        List<StatementSection> sections = new ArrayList<>();
+        int start = 0;
+        long startLine = 1;
+        long line = 1;
+        int limit = file.limit();
+        for (int p = 0; p < limit; p++) {
+            if ((p == 0 || file.get(p - 1) == '\n') && file.get(p) == '!' && p > start
+                    && StatementImporter.startsWithIgnoreCase(file, p, "!Type:")) {
+                sections.add(new StatementSection(start, p, startLine));
+                start = p;
+                startLine = line;
+            }
+            if (file.get(p) == '\n') {
+                line++;
+            }
+        }
+        sections.add(new StatementSection(start, limit, startLine));
+        return sections;
+    }
+    
+    @Override
+    public List<StatementEntry> parseSection(StatementSection section, ImportErrors errors) {
+        List<StatementEntry> entries = new ArrayList<>();
+        boolean transactions = false;
+        long line = section.firstLine;
+        
+        long entryLine = 0;
+        String date = null;
+        String amount = null;
+        String payee = null;
+        String memo = null;
+        String category = null;
+        
+        int p = section.start;
+        while (p < section.end) {
+            int eol = p;
+            while (eol < section.end && file.get(eol) != '\n') {
+                eol++;
+            }
+            String text = StatementImporter.text(file, p, eol, charset);
+            long textLine = line;
+            p = eol + 1;
+            line++;
+            if (text.isEmpty()) {
+                continue;
+            }
+            
+            if (text.charAt(0) == '!') {
+                String type = text.toLowerCase();
+                transactions = type.startsWith("!type:bank") || type.startsWith("!type:cash")
+                    || type.startsWith("!type:ccard") || type.startsWith("!type:oth");
+                continue;
+            }
+            if (!transactions) {
+                continue;
+            }
+            
+            if (date == null && amount == null && payee == null && memo == null && category == null) {
+                entryLine = textLine;
+            }
+            String value = text.substring(1).trim();
+            switch (text.charAt(0)) {
+                case 'D': date = value; break;
+                case 'T':
+                case 'U': amount = value; break;
+                case 'P': payee = value; break;
+                case 'M': memo = value; break;
+                case 'L': category = value; break;
+                case '^':
+                    StatementEntry entry = toEntry(entryLine, date, amount, payee, memo, category, errors);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                    date = amount = payee = memo = category = null;
+                    break;
+                default:
+                    // Cleared status, cheque number, address and split lines
+                    break;
+            }
+        }
+        if (date != null || amount != null) {
+            errors.add(entryLine, "Statement entry is not closed with ^");
+        }
+        return entries;
+    }
+    
+    private StatementEntry toEntry(long line, String date, String amount, String payee, String memo,
+                                   String category, ImportErrors errors) {
+        int[] parts = date == null ? null : dateParts(date);
+        LocalDate parsed = null;
+        if (parts != null) {
+            try {
+                parsed = dayFirst ? LocalDate.of(parts[2], parts[1], parts[0])
+                                  : LocalDate.of(parts[2], parts[0], parts[1]);
+            } catch (DateTimeException e) {
+                parsed = null;
+            }
+        }
+        if (parsed == null) {
+            errors.add(line, "Invalid date \"" + (date == null ? "" : date) + "\"");
+            return null;
+        }
+        
+        long amountMinor;
+        try {
+            amountMinor = StatementImporter.parseAmount(amount == null ? "" : amount);
+        } catch (NumberFormatException e) {
+            errors.add(line, "Invalid amount \"" + (amount == null ? "" : amount) + "\"");
+            return null;
+        }
+        
+        // "Food:Groceries" files under Food; "[Savings]" is a transfer, not a category
+        String categoryName = null;
+        if (category != null && !category.isEmpty() && category.charAt(0) != '[') {
+            int colon = category.indexOf(':');
+            categoryName = (colon >= 0 ? category.substring(0, colon) : category).trim();
+        }
+        
+        return new StatementEntry(line, null, null, parsed, amountMinor,
+                                  StatementImporter.describe(payee, memo), categoryName);
+    }
+    
+    /**
+     * Split a QIF date such as 18/10/2026, 10/18'26 or 18.10.26 into
+     * [first, second, four-digit year]
+     */
+    private static int[] dateParts(String date) {
+        int[] parts = new int[3];
+        int part = 0;
+        int yearDigits = 0;
+        boolean digits = false;
+        for (int i = 0; i < date.length(); i++) {
+            char c = date.charAt(i);
+            if (c >= '0' && c <= '9') {
+                parts[part] = parts[part] * 10 + (c - '0');
+                digits = true;
+                if (part == 2) yearDigits++;
+            } else if ((c == '/' || c == '-' || c == '.' || c == '\'') && digits && part < 2) {
+                part++;
+                digits = false;
+            } else if (c != ' ') {
+                return null;
+            }
+        }
+        if (part != 2 || !digits) {
+            return null;
+        }
+        if (yearDigits <= 2) {
+            parts[2] += parts[2] < 70 ? 2000 : 1900;
+        }
+        return parts;
+    }
+    
+    private boolean detectDayFirst() {
+        boolean apostrophe = false;
+        int limit = file.limit();
+        for (int p = 0; p < limit; p++) {
+            if (file.get(p) != 'D' || (p > 0 && file.get(p - 1) != '\n')) {
+                continue;
+            }
+            int eol = p;
+            while (eol < limit && file.get(eol) != '\n') {
+                eol++;
+            }
+            String date = StatementImporter.text(file, p + 1, eol, StandardCharsets.US_ASCII);
+            apostrophe |= date.indexOf('\'') >= 0;
+            int[] parts = dateParts(date);
+            if (parts != null && parts[0] > 12) {
+                return true;
+            }
+            if (parts != null && parts[1] > 12) {
+                return false;
+            }
+            p = eol;
+        }
+        return !apostrophe;
+    }
+}
+
+/**
+ * Imports OFX/QFX and QIF bank statements
+ * 
+ * The file is memory-mapped, split into per-account sections and the
+ * sections are parsed in parallel. Entries are then deduplicated on the
+ * calling thread, in file order, before being inserted in batches through
+ * addTransactions:
+ * 
+ * - An OFX entry whose FITID was already seen for the same account in
+ *   this file is a duplicate (overlapping statements).
+ * - Entries are inserted with a source id, the account and FITID or for
+ *   QIF the account and the entry's occurrence in the file, so the
+ *   content hash index skips those an earlier import already stored.
+ *   Matching only within an account keeps identical entries on two
+ *   accounts, such as both sides of a transfer, from being dropped.
+ * 
+ * Money out becomes an expense and money in income; amounts are stored
+ * unsigned. Entries without a category are filed under "Other".
+ */
+final class StatementImporter {
+    private static final int BATCH_ROWS = 5_000;
+    private static final String DEFAULT_CATEGORY = "Other";
+    
+    private final DatabaseManager db;
+    private final int parallelism;
+    
+    public StatementImporter(DatabaseManager db) {
+        this(db, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public StatementImporter(DatabaseManager db, int parallelism) {
+        this.db = db;
+        this.parallelism = Math.max(1, parallelism);
+    }
+    
+    /**
+     * @return true if the file name looks like an OFX, QFX or QIF statement
+     */
+    static boolean isStatementFile(String fileName) {
+        String name = fileName.toLowerCase();
+        return name.endsWith(".ofx") || name.endsWith(".qfx") || name.endsWith(".qif");
+    }
+    
+    /**
+     * Import a statement file for a user
+     * 
+     * @param userId User's ID
+     * @param path OFX, QFX or QIF file
+     * @param account Account the file is a statement of, used for entries
+     *                whose section names no account (QIF files)
+     * @param listener Progress listener, may be null
+     * @return Counts, duplicates skipped and the reasons entries were rejected
+     * @throws IOException if the file cannot be read or is not a statement
+     */
+    public ImportResult importFile(int userId, Path path, String account, ImportProgressListener listener)
+            throws IOException {
+        ImportErrors errors = new ImportErrors();
+        List<StatementEntry> entries = parse(path, errors);
+        long unreadable = errors.count();
+        
+        BloomFilter seen = db.loadContentHashFilter(userId, entries.size());
+        OccurrenceCounter occurrences = new OccurrenceCounter();
+        Set<String> fitIds = new HashSet<>();
+        ImportCategories categories = new ImportCategories(db);
+        List<Transaction> batch = new ArrayList<>(BATCH_ROWS);
+        long[] lines = new long[BATCH_ROWS];
+        long imported = 0;
+        long duplicates = 0;
+        
+        for (int i = 0; i < entries.size(); i++) {
+            StatementEntry entry = entries.get(i);
+            if (entry.getFitId() != null && !fitIds.add(entry.getAccount() + '\0' + entry.getFitId())) {
+                duplicates++;
+                continue;
+            }
+            String entryAccount = OccurrenceCounter.account(
+                entry.getAccount() != null ? entry.getAccount() : account);
+            String sourceId = entry.getFitId() != null
+                ? "ofx:" + entryAccount + ':' + entry.getFitId()
+                : occurrences.next("stmt:" + entryAccount, entry.getDate(),
+                                   entry.getSignedAmountMinor(), entry.getDescription());
+            
+            if (entry.getSignedAmountMinor() == 0) {
+                errors.add(entry.getLine(), "Amount is zero");
+                continue;
+            }
+            String category = entry.getCategory() == null || entry.getCategory().isEmpty()
+                ? DEFAULT_CATEGORY : entry.getCategory();
+            int categoryId = categories.idOf(category);
+            if (categoryId == CategoryDictionary.NO_ID) {
+                errors.add(entry.getLine(), categories.problem(category));
+                continue;
+            }
+            Transaction transaction = new Transaction(0, userId, entry.getDate(),
+                entry.getSignedAmountMinor() < 0 ? TransactionType.EXPENSE : TransactionType.INCOME,
+                categoryId, entry.getDescription(), Math.abs(entry.getSignedAmountMinor()));
+            transaction.setSourceId(sourceId);
+            lines[batch.size()] = entry.getLine();
+            batch.add(transaction);
+            
+            if (batch.size() == BATCH_ROWS) {
+                BatchInsertResult result = insert(batch, lines, seen, errors);
+                imported += result.getInsertedCount();
+                duplicates += result.getDuplicateCount();
+                if (listener != null) {
+                    listener.onProgress(i + 1, entries.size(), imported);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            BatchInsertResult result = insert(batch, lines, seen, errors);
+            imported += result.getInsertedCount();
+            duplicates += result.getDuplicateCount();
+        }
+        if (listener != null) {
+            listener.onProgress(entries.size(), entries.size(), imported);
+        }
+        
+        return new ImportResult(entries.size() + unreadable, imported, duplicates,
+                                errors.count(), errors.reported());
+    }
+    
+    /**
+     * Map the file and parse its sections in parallel
+     * 
+     * @return Entries in file order
+     */
+    private List<StatementEntry> parse(Path path, ImportErrors errors) throws IOException {
+        ByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Statement file is too large: " + channel.size() + " bytes");
+            }
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        StatementParser parser;
+        int headerEnd = Math.min(file.limit(), 4096);
+        if (indexOf(file, 0, headerEnd, "OFXHEADER".getBytes(StandardCharsets.US_ASCII)) >= 0
+                || indexOf(file, 0, headerEnd, "<OFX>".getBytes(StandardCharsets.US_ASCII)) >= 0) {
+            parser = new OfxParser(file);
+        } else if (indexOf(file, 0, headerEnd, "!Type:".getBytes(StandardCharsets.US_ASCII)) >= 0
+                || indexOf(file, 0, headerEnd, "!TYPE:".getBytes(StandardCharsets.US_ASCII)) >= 0) {
+            parser = new QifParser(file);
+        } else {
+            throw new IOException("Not an OFX or QIF statement: " + path.getFileName());
+        }
+        
+        List<StatementSection> sections = parser.sections();
+        List<StatementEntry> entries = new ArrayList<>();
+        if (sections.size() == 1 || parallelism == 1) {
+            for (StatementSection section : sections) {
+                entries.addAll(parser.parseSection(section, errors));
+            }
+            return entries;
+        }
+        
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, sections.size()), r -> {
+            Thread t = new Thread(r, "fiscalforge-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<List<StatementEntry>>> parsed = new ArrayList<>();
+            for (StatementSection section : sections) {
+                parsed.add(workers.submit(() -> parser.parseSection(section, errors)));
+            }
+            for (Future<List<StatementEntry>> section : parsed) {
+                entries.addAll(section.get());
+            }
+            return entries;
+        } catch (ExecutionException e) {
+            throw new IOException("Could not parse statement", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrupted");
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+    
+    /**
+     * Insert a batch and clear it
+     * 
+     * @return Rows inserted and duplicates skipped
+     */
+    private BatchInsertResult insert(List<Transaction> batch, long[] lines, BloomFilter seen,
+                                     ImportErrors errors) {
+        BatchInsertResult result = db.addTransactions(batch, seen);
+        for (BatchFailure failure : result.getFailures()) {
+            errors.add(lines[failure.getIndex()], failure.getReason());
+        }
+        batch.clear();
+        return result;
+    }
+    
+    /**
+     * Description stored for a payee/name and memo pair
+     */
+    static String describe(String name, String memo) {
+        boolean hasName = name != null && !name.isEmpty();
+        boolean hasMemo = memo != null && !memo.isEmpty() && !memo.equals(name);
+        if (hasName && hasMemo) return name + " - " + memo;
+        if (hasName) return name;
+        return hasMemo ? memo : "";
+    }
+    
+    /**
+     * Parse a statement amount such as "-1,234.56" or "12,50" into minor units
+     */
+    static long parseAmount(String amount) {
+        String plain = amount.trim();
+        int comma = plain.lastIndexOf(',');
+        if (comma >= 0 && plain.indexOf('.') < 0 && plain.length() - comma - 1 <= 2) {
+            // European decimal comma, as some OFX exports use
+            plain = plain.substring(0, comma).replace(",", "") + "." + plain.substring(comma + 1);
+        }
+        return Money.parseMinor(plain.replace(",", ""));
+    }
+    
+    /**
+     * Decode and trim bytes [from, to) of a file
+     */
+    static String text(ByteBuffer file, int from, int to, Charset charset) {
+        while (from < to && (file.get(from) == ' ' || file.get(from) == '\t' || file.get(from) == '\r'
+                             || file.get(from) == '\n')) from++;
+        while (to > from && (file.get(to - 1) == ' ' || file.get(to - 1) == '\t' || file.get(to - 1) == '\r'
+                             || file.get(to - 1) == '\n')) to--;
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = file.get(from + i);
+        }
+        return new String(bytes, charset);
+    }
+    
+    static boolean startsWith(ByteBuffer file, int at, byte[] prefix) {
+        if (at + prefix.length > file.limit()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (file.get(at + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    static boolean startsWithIgnoreCase(ByteBuffer file, int at, String prefix) {
+        if (at + prefix.length() > file.limit()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase((char) file.get(at + i)) != Character.toLowerCase(prefix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return Position of the first occurrence of bytes in [from, to), or -1
+     */
+    static int indexOf(ByteBuffer file, int from, int to, byte[] bytes) {
+        for (int p = from; p + bytes.length <= to; p++) {
+            if (startsWith(file, p, bytes)) {
+                return p;
+            }
+        }
+        return -1;
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// ASYNC DATABASE MANAGER CLASS
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Non-blocking facade over DatabaseManager
+ * 
+ * Each operation runs as its own task and returns a CompletableFuture.
+ * Tasks run on virtual threads when the JVM supports them (Java 21+) and
+ * on daemon platform threads otherwise. A semaphore sized to the
+ * connection pool bounds how many tasks touch the database at once, so
+ * callers can fan out freely without queueing inside the pool.
+ */
+class AsyncDatabaseManager implements AutoCloseable {
+    private final DatabaseManager db;
+    private final ExecutorService executor;
+    private final Semaphore concurrency;
+    
+    public AsyncDatabaseManager(DatabaseManager db) {
+        this.db = db;
+        this.executor = newTaskExecutor();
+        this.concurrency = new Semaphore(db.getMaxPoolSize());
+    }
+    
+    /**
+     * Create a thread-per-task executor, preferring virtual threads
+     */
+    private static ExecutorService newTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "fiscalforge-db");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+    
+    /**
+     * Run a DatabaseManager call on the executor, holding a concurrency permit
+     * 
+     * @param call Blocking call to run
+     * @return Future completed with the call's result
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                concurrency.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return call.get();
+            } finally {
+                concurrency.release();
+            }
+        }, executor);
+    }
+    
+    public CompletableFuture<User> authenticateUser(String username, String password) {
+        return submit(() -> db.authenticateUser(username, password));
+    }
+    
+    public CompletableFuture<Boolean> registerUser(String username, String password, String email) {
+        return submit(() -> db.registerUser(username, password, email));
+    }
+    
+    public CompletableFuture<Boolean> addTransaction(Transaction transaction) {
+        return submit(() -> db.addTransaction(transaction));
+    }
+    
+    public CompletableFuture<BatchInsertResult> addTransactions(Collection<Transaction> transactions) {
+        return submit(() -> db.addTransactions(transactions));
+    }
+    
+    public CompletableFuture<TransactionPage> getTransactionsPage(int userId, PageCursor after, int pageSize) {
+        return submit(() -> db.getTransactionsPage(userId, after, pageSize));
+    }
+    
+    public CompletableFuture<List<Transaction>> getRecentTransactions(int userId, int limit) {
+        return submit(() -> db.getRecentTransactions(userId, limit));
+    }
+    
+    public CompletableFuture<Long> getTotalIncome(int userId) {
+        return submit(() -> db.getTotalIncome(userId));
+    }
+    
+    public CompletableFuture<Long> getTotalExpenses(int userId) {
+        return submit(() -> db.getTotalExpenses(userId));
+    }
+    
+    public CompletableFuture<Map<String, Long>> getExpensesByCategory(int userId) {
+        return submit(() -> db.getExpensesByCategory(userId));
+    }
+    
+    public CompletableFuture<Map<String, Long>> getMonthlyExpenses(int userId) {
+        return submit(() -> db.getMonthlyExpenses(userId));
+    }
+    
+    public CompletableFuture<DashboardSnapshot> getDashboardSnapshot(int userId, int recentLimit) {
+        return submit(() -> db.getDashboardSnapshot(userId, recentLimit));
+    }
+    
+    public CompletableFuture<Boolean> exportToCSV(int userId, String filePath) {
+        return submit(() -> db.exportToCSV(userId, filePath));
+    }
+    
+    public CompletableFuture<Boolean> exportToExcel(int userId, String filePath) {
+        return submit(() -> db.exportToExcel(userId, filePath));
+    }
+    
+    /**
+     * Stop accepting work; running tasks are allowed to finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// DASHBOARD SNAPSHOT CLASS
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Everything the dashboard renders, loaded together
+ * 
+ * All amounts are minor units (pence).
+ */
+class DashboardSnapshot {
+    private final long totalIncome;
+    private final long totalExpenses;
+    private final Map<String, Long> expensesByCategory;
+    private final Map<String, Long> monthlyExpenses;
+    private final List<Transaction> recentTransactions;
+    
+    public DashboardSnapshot(long totalIncome, long totalExpenses,
+                             Map<String, Long> expensesByCategory,
+                             Map<String, Long> monthlyExpenses,
+                             List<Transaction> recentTransactions) {
+        this.totalIncome = totalIncome;
+        this.totalExpenses = totalExpenses;
+        this.expensesByCategory = expensesByCategory;
+        this.monthlyExpenses = monthlyExpenses;
+        this.recentTransactions = recentTransactions;
+    }
+    
+    public long getTotalIncome() { return totalIncome; }
+    public long getTotalExpenses() { return totalExpenses; }
+    public long getBalance() { return Math.subtractExact(totalIncome, totalExpenses); }
+    public Map<String, Long> getExpensesByCategory() { return expensesByCategory; }
+    public Map<String, Long> getMonthlyExpenses() { return monthlyExpenses; }
+    public List<Transaction> getRecentTransactions() { return recentTransactions; }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// SCHEMA MIGRATION CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * A single versioned schema change
+ */
+class Migration {
+    /**
+     * Work performed by a migration on an open connection
+     */
+    interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+    
+    private final int version;
+    private final String description;
+    private final Step step;
+    
+    public Migration(int version, String description, Step step) {
+        this.version = version;
+        this.description = description;
+        this.step = step;
+    }
+    
+    // MySQL ER_TABLE_EXISTS_ERROR, ER_BAD_TABLE_ERROR, ER_DUP_FIELDNAME,
+    // ER_DUP_KEYNAME and ER_CANT_DROP_FIELD_OR_KEY: the DDL already ran
+    private static final Set<Integer> ALREADY_APPLIED_ERRORS = Set.of(1050, 1051, 1060, 1061, 1091);
+    
+    /**
+     * Create a migration that runs a fixed list of SQL statements
+     * 
+     * Completed statements are recorded in schema_migration_progress, so a
+     * migration interrupted part way resumes at the first statement that
+     * did not finish. DDL commits implicitly, which leaves a window between
+     * a statement and its progress row; a rerun statement that fails only
+     * because its change is already present is treated as done.
+     * 
+     * @param version Schema version this migration produces
+     * @param description Human readable summary recorded in schema_version
+     * @param statements SQL to execute in order
+     * @return Migration instance
+     */
+    public static Migration sql(int version, String description, String... statements) {
+        return new Migration(version, description, conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                for (int i = completedSteps(conn, version); i < statements.length; i++) {
+                    try {
+                        stmt.execute(statements[i]);
+                    } catch (SQLException e) {
+                        if (!ALREADY_APPLIED_ERRORS.contains(e.getErrorCode())) {
+                            throw e;
+                        }
+                        System.out.println("Migration " + version + " step " + (i + 1) +
+                                           " already applied: " + e.getMessage());
+                    }
+                    // Data changes commit together with their progress row
+                    recordStep(conn, version, i + 1);
+                    conn.commit();
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+    }
+    
+    private static int completedSteps(Connection conn, int version) throws SQLException {
+        String sql = "SELECT steps_done FROM schema_migration_progress WHERE version = ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, version);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+    
+    private static void recordStep(Connection conn, int version, int stepsDone) throws SQLException {
+        String sql = "INSERT INTO schema_migration_progress (version, steps_done) VALUES (?, ?) " +
+                     "ON DUPLICATE KEY UPDATE steps_done = VALUES(steps_done)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, version);
+            pstmt.setInt(2, stepsDone);
+            pstmt.executeUpdate();
+        }
+    }
+    
+    public int getVersion() { return version; }
+    public String getDescription() { return description; }
+    
+    void apply(Connection conn) throws SQLException {
+        step.apply(conn);
+    }
+}
+
+/**
+ * Applies versioned schema migrations
+ * 
+ * Applied versions are recorded in the schema_version table. At startup
+ * a single query compares the recorded version with the latest known
+ * migration; only pending migrations are executed, in version order.
+ * Statement-level progress inside a migration is kept in
+ * schema_migration_progress so a failed migration can be rerun.
+ */
+class SchemaMigrator {
+    private static final List<Migration> MIGRATIONS = List.of(
+        Migration.sql(1, "Create users, transactions and budgets tables",
+            "CREATE TABLE IF NOT EXISTS users (" +
+            "id INT PRIMARY KEY AUTO_INCREMENT," +
+            "username VARCHAR(50) UNIQUE NOT NULL," +
+            "password_hash VARCHAR(64) NOT NULL," +
+            "email VARCHAR(100)," +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+            ")",
+            "CREATE TABLE IF NOT EXISTS transactions (" +
+            "id INT PRIMARY KEY AUTO_INCREMENT," +
+            "user_id INT NOT NULL," +
+            "date DATE NOT NULL," +
+            "type VARCHAR(20) NOT NULL," +
+            "category VARCHAR(50) NOT NULL," +
+            "description TEXT," +
+            "amount DECIMAL(10, 2) NOT NULL," +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
+            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
+            ")",
+            "CREATE TABLE IF NOT EXISTS budgets (" +
+            "id INT PRIMARY KEY AUTO_INCREMENT," +
+            "user_id INT NOT NULL," +
+            "category VARCHAR(50) NOT NULL," +
+            "amount DECIMAL(10, 2) NOT NULL," +
+            "period VARCHAR(20) NOT NULL," +
+            "start_date DATE NOT NULL," +
+            "end_date DATE NOT NULL," +
+            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
+            ")"
+        ),
+        Migration.sql(2, "Add covering indexes for per-user transaction queries",
+            // Totals and monthly trend: filter on (user_id, type, date), read amount from the index
+            "CREATE INDEX idx_transactions_user_type_date " +
+            "ON transactions (user_id, type, date, amount)",
+            // Category breakdown: group on category without touching the rows
+            "CREATE INDEX idx_transactions_user_type_category " +
+            "ON transactions (user_id, type, category, amount)",
+            // Recent transactions and keyset paging by date
+            "CREATE INDEX idx_transactions_user_date_created " +
+            "ON transactions (user_id, date, created_at)"
+        ),
+        Migration.sql(3, "Add stored month_key column for sargable monthly bucketing",
+            "ALTER TABLE transactions " +
+            "ADD COLUMN month_key INT AS (YEAR(date) * 100 + MONTH(date)) STORED",
+            "CREATE INDEX idx_transactions_user_type_month " +
+            "ON transactions (user_id, type, month_key, amount)"
+        ),
+        Migration.sql(4, "Add monthly_rollups aggregate table",
+            "CREATE TABLE IF NOT EXISTS monthly_rollups (" +
+            "user_id INT NOT NULL," +
+            "type VARCHAR(20) NOT NULL," +
+            "month_key INT NOT NULL," +
+            "category VARCHAR(50) NOT NULL," +
+            "total DECIMAL(15, 2) NOT NULL," +
+            "txn_count INT NOT NULL," +
+            "PRIMARY KEY (user_id, type, month_key, category)," +
+            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE" +
+            ")",
+            "INSERT INTO monthly_rollups (user_id, type, month_key, category, total, txn_count) " +
+            "SELECT user_id, type, month_key, category, SUM(amount), COUNT(*) " +
+            "FROM transactions GROUP BY user_id, type, month_key, category"
+        ),
+        Migration.sql(5, "Record the currency of each transaction",
+            "ALTER TABLE transactions ADD COLUMN currency CHAR(3) NOT NULL DEFAULT 'GBP'"
+        ),
+        Migration.sql(6, "Dictionary-encode transaction types and categories",
+            "CREATE TABLE IF NOT EXISTS categories (" +
+            "id SMALLINT PRIMARY KEY AUTO_INCREMENT," +
+            "name VARCHAR(50) NOT NULL UNIQUE" +
+            ")",
+            "INSERT IGNORE INTO categories (name) VALUES " +
+            "('Food'), ('Transport'), ('Entertainment'), ('Bills'), ('Shopping'), ('Salary'), ('Other')",
+            "INSERT IGNORE INTO categories (name) SELECT DISTINCT category FROM transactions",
+            "INSERT IGNORE INTO categories (name) SELECT DISTINCT category FROM budgets",
+            // transactions: type and category strings become TINYINT / SMALLINT codes
+            "ALTER TABLE transactions " +
+            "ADD COLUMN type_code TINYINT NOT NULL DEFAULT 0 AFTER date, " +
+            "ADD COLUMN category_id SMALLINT NOT NULL DEFAULT 0 AFTER type_code",
+            "UPDATE transactions t JOIN categories c ON c.name = t.category " +
+            "SET t.category_id = c.id, t.type_code = IF(t.type = 'Income', 1, 2)",
+            "ALTER TABLE transactions " +
+            "DROP INDEX idx_transactions_user_type_date, " +
+            "DROP INDEX idx_transactions_user_type_category, " +
+            "DROP INDEX idx_transactions_user_type_month, " +
+            "DROP COLUMN type, DROP COLUMN category, " +
+            "ALTER COLUMN type_code DROP DEFAULT, ALTER COLUMN category_id DROP DEFAULT, " +
+            "ADD FOREIGN KEY (category_id) REFERENCES categories(id)",
+            "CREATE INDEX idx_transactions_user_type_date " +
+            "ON transactions (user_id, type_code, date, amount)",
+            "CREATE INDEX idx_transactions_user_type_category " +
+            "ON transactions (user_id, type_code, category_id, amount)",
+            "CREATE INDEX idx_transactions_user_type_month " +
+            "ON transactions (user_id, type_code, month_key, amount)",
+            // budgets: same category encoding
+            "ALTER TABLE budgets ADD COLUMN category_id SMALLINT NOT NULL DEFAULT 0 AFTER user_id",
+            "UPDATE budgets b JOIN categories c ON c.name = b.category SET b.category_id = c.id",
+            "ALTER TABLE budgets DROP COLUMN category, ALTER COLUMN category_id DROP DEFAULT, " +
+            "ADD FOREIGN KEY (category_id) REFERENCES categories(id)",
+            // monthly_rollups: rebuild keyed on the codes
+            "DROP TABLE monthly_rollups",
+            "CREATE TABLE monthly_rollups (" +
+            "user_id INT NOT NULL," +
+            "type_code TINYINT NOT NULL," +
+            "month_key INT NOT NULL," +
+            "category_id SMALLINT NOT NULL," +
+            "total DECIMAL(15, 2) NOT NULL," +
+            "txn_count INT NOT NULL," +
+            "PRIMARY KEY (user_id, type_code, month_key, category_id)," +
+            "FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE," +
+            "FOREIGN KEY (category_id) REFERENCES categories(id)" +
+            ")",
+            "INSERT INTO monthly_rollups (user_id, type_code, month_key, category_id, total, txn_count) " +
+            "SELECT user_id, type_code, month_key, category_id, SUM(amount), COUNT(*) " +
+            "FROM transactions GROUP BY user_id, type_code, month_key, category_id"
+        ),
+        Migration.sql(7, "Add content hash for idempotent imports",
+            "ALTER TABLE transactions ADD COLUMN content_hash BINARY(16) NULL",
+            // Existing rows have no source id; hashing their id keeps them
+            // unique without ever matching an imported row
+            "UPDATE transactions SET content_hash = UNHEX(LEFT(SHA2(CONCAT('legacy:', id), 256), 32))",
+            "ALTER TABLE transactions MODIFY content_hash BINARY(16) NOT NULL",
+            "CREATE UNIQUE INDEX uq_transactions_user_content_hash " +
+            "ON transactions (user_id, content_hash)"
+        ),
+        Migration.sql(8, "Key the date index on id for recent lists and keyset paging",
+            // Paging seeks on (date, id); created_at only broke ties by accident
+            "CREATE INDEX idx_transactions_user_date_id " +
+            "ON transactions (user_id, date, id)",
+            "DROP INDEX idx_transactions_user_date_created ON transactions"
+        ),
+        Migration.sql(9, "Drop the month index superseded by monthly_rollups",
+            // Monthly reads come from the rollups; the index only cost writes
+            "DROP INDEX idx_transactions_user_type_month ON transactions"
+        )
+    );
+    
+    // migrate skips every version at or below the recorded one, so a
+    // migration listed out of order would never run
+    static {
+        for (int i = 1; i < MIGRATIONS.size(); i++) {
+            if (MIGRATIONS.get(i).getVersion() <= MIGRATIONS.get(i - 1).getVersion()) {
+                throw new IllegalStateException("Migration " + MIGRATIONS.get(i).getVersion() +
+                                                " is listed after migration " +
+                                                MIGRATIONS.get(i - 1).getVersion());
+            }
+        }
+    }
+    
+    /**
+     * @return Version produced by the newest known migration
+     */
+    public static int latestVersion() {
+        int latest = 0;
+        for (Migration migration : MIGRATIONS) {
+            latest = Math.max(latest, migration.getVersion());
+        }
+        return latest;
+    }
+    
+    /**
+     * Apply all migrations newer than the recorded schema version
+     * 
+     * @param conn Open connection to the FiscalForge database
+     * @return Schema version after migrating
+     * @throws SQLException if a migration fails; earlier migrations stay recorded
+     */
+    public int migrate(Connection conn) throws SQLException {
+        int current = currentVersion(conn);
+        if (current >= latestVersion()) {
+            System.out.println("Database schema is current (version " + current + ")");
+            return current;
+        }
+        
+        try (Statement stmt = conn.createStatement()) {
+            // Create database if it doesn't exist
+            stmt.execute("CREATE DATABASE IF NOT EXISTS fiscalforge");
+            stmt.execute("USE fiscalforge");
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS schema_version (" +
+                "version INT PRIMARY KEY," +
+                "description VARCHAR(200) NOT NULL," +
+                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS schema_migration_progress (" +
+                "version INT PRIMARY KEY," +
+                "steps_done INT NOT NULL" +
+                ")");
+        }
+        
+        for (Migration migration : MIGRATIONS) {
+            if (migration.getVersion() <= current) {
+                continue;
+            }
+            
+            System.out.println("Applying schema migration " + migration.getVersion() +
+                               ": " + migration.getDescription());
+            migration.apply(conn);
+            recordVersion(conn, migration);
+            current = migration.getVersion();
+        }
+        
+        return current;
+    }
+    
+    /**
+     * Read the recorded schema version
+     * 
+     * @return Highest applied version, or 0 for a database that predates migrations
+     */
+    private int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            // 42S02: base table or view not found
+            if ("42S02".equals(e.getSQLState())) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+    
+    private void recordVersion(Connection conn, Migration migration) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, migration.getVersion());
+            pstmt.setString(2, migration.getDescription());
+            pstmt.executeUpdate();
+        }
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// QUERY PLAN CLASS
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * First row of MySQL's EXPLAIN output for a query
+ */
+class QueryPlan {
+    private final String accessType;
+    private final String key;
+    private final long rows;
+    private final String extra;
+    
+    public QueryPlan(String accessType, String key, long rows, String extra) {
+        this.accessType = accessType;
+        this.key = key;
+        this.rows = rows;
+        this.extra = extra;
+    }
+    
+    /**
+     * @return Access type, such as "range", "ref" or "ALL"
+     */
+    public String getAccessType() { return accessType; }
+    
+    /**
+     * @return Index MySQL chose, or null if none
+     */
+    public String getKey() { return key; }
+    public long getRows() { return rows; }
+    public String getExtra() { return extra; }
+    
+    /**
+     * @param index Index name; "PRIMARY" for the primary key
+     * @return true if the plan is a range scan of that index
+     */
+    public boolean isRangeScanOf(String index) {
+        return "range".equals(accessType) && index.equals(key);
+    }
+    
+    @Override
+    public String toString() {
+        return "QueryPlan[type=" + accessType + ", key=" + key + ", rows=" + rows + ", extra=" + extra + "]";
+    }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// PAGINATION CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Position in a user's transaction history, newest first
+ * 
+ * Identifies the last row of a page by its (date, id) sort key. The token
+ * form can be handed to callers and turned back into a cursor later.
+ */
+class PageCursor {
+    private final LocalDate date;
+    private final int id;
+    
+    public PageCursor(LocalDate date, int id) {
+        this.date = date;
+        this.id = id;
+    }
+    
+    public LocalDate getDate() { return date; }
+    public int getId() { return id; }
+    
+    /**
+     * Encode the cursor as an opaque continuation token
+     * 
+     * @return Token in the form yyyy-MM-dd:id
+     */
+    public String toToken() {
+        return date + ":" + id;
+    }
+    
+    /**
+     * Decode a token produced by toToken()
+     * 
+     * @param token Continuation token
+     * @return Cursor positioned after the encoded row
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static PageCursor fromToken(String token) {
+        int separator = token.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+        try {
+            return new PageCursor(
+                LocalDate.parse(token.substring(0, separator)),
+                Integer.parseInt(token.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+    }
+}
+
+/**
+ * One page of transactions plus the cursor for the next page
+ */
+class TransactionPage {
+    private final List<Transaction> transactions;
+    private final PageCursor nextCursor;
+    
+    public TransactionPage(List<Transaction> transactions, PageCursor nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+    
+    public List<Transaction> getTransactions() { return transactions; }
+    
+    /**
+     * @return Cursor for the following page, or null if this is the last page
+     */
+    public PageCursor getNextCursor() { return nextCursor; }
+    
+    public boolean hasMore() { return nextCursor != null; }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// BULK INSERT RESULT CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * A row rejected by DatabaseManager.addTransactions
+ */
+class BatchFailure {
+    private final int index;
+    private final Transaction transaction;
+    private final String reason;
+    
+    public BatchFailure(int index, Transaction transaction, String reason) {
+        this.index = index;
+        this.transaction = transaction;
+        this.reason = reason;
+    }
+    
+    public int getIndex() { return index; }
+    public Transaction getTransaction() { return transaction; }
+    public String getReason() { return reason; }
+}
+
+/**
+ * Outcome of DatabaseManager.addTransactions
+ * 
+ * Generated ids are positional: getGeneratedIds()[i] belongs to the i-th
+ * submitted transaction and is 0 when that row failed or was a duplicate.
+ */
+class BatchInsertResult {
+    private final int[] generatedIds;
+    private final List<BatchFailure> failures;
+    private final List<Integer> duplicates;
+    
+    public BatchInsertResult(int[] generatedIds, List<BatchFailure> failures) {
+        this(generatedIds, failures, Collections.emptyList());
+    }
+    
+    public BatchInsertResult(int[] generatedIds, List<BatchFailure> failures, List<Integer> duplicates) {
+        this.generatedIds = generatedIds;
+        this.failures = failures;
+        this.duplicates = duplicates;
+    }
+    
+    public int[] getGeneratedIds() { return generatedIds; }
+    public List<BatchFailure> getFailures() { return failures; }
+    
+    /**
+     * @return Indexes of submitted transactions that were already stored
+     */
+    public List<Integer> getDuplicates() { return duplicates; }
+    public int getDuplicateCount() { return duplicates.size(); }
+    
+    public int getInsertedCount() {
+        int count = 0;
+        for (int id : generatedIds) {
+            if (id != 0) count++;
+        }
+        return count;
+    }
+    
+    public boolean hasFailures() { return !failures.isEmpty(); }
+}
+
+// ═══════════════════════════════════════════════════════════════════════════
+// CONNECTION POOL CLASSES
+// ═══════════════════════════════════════════════════════════════════════════
+
+/**
+ * Connection pool configuration
+ * 
+ * Holds the MySQL connection details together with the pool sizing and
+ * connection lifecycle limits used by ConnectionPool
+ */
+class PoolConfig {
+    // rewriteBatchedStatements lets Connector/J send a JDBC batch as multi-row INSERTs
+    private static final String DEFAULT_DB_URL =
+        "jdbc:mysql://localhost:3306/fiscalforge?rewriteBatchedStatements=true";
+    private static final String DEFAULT_DB_USER = "root";
+    private static final String DEFAULT_DB_PASSWORD = "";
+    
+    private String url = DEFAULT_DB_URL;
+    private String user = DEFAULT_DB_USER;
+    private String password = DEFAULT_DB_PASSWORD;
+    private int maxPoolSize = 10;
+    private int minIdle = 2;
+    private long connectionTimeoutMillis = 30_000;
+    private long idleTimeoutMillis = 10 * 60_000;
+    private long maxLifetimeMillis = 30 * 60_000;
+    private long validationIntervalMillis = 5_000;
+    private int validationTimeoutSeconds = 5;
+    private long housekeepingIntervalMillis = 30_000;
+    
+    // Getters and setters
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+    
+    public String getUser() { return user; }
+    public void setUser(String user) { this.user = user; }
+    
+    public String getPassword() { return password; }
+    public void setPassword(String password) { this.password = password; }
+    
+    public int getMaxPoolSize() { return maxPoolSize; }
+    public void setMaxPoolSize(int maxPoolSize) { this.maxPoolSize = maxPoolSize; }
+    
+    public int getMinIdle() { return minIdle; }
+    public void setMinIdle(int minIdle) { this.minIdle = minIdle; }
+    
+    public long getConnectionTimeoutMillis() { return connectionTimeoutMillis; }
+    public void setConnectionTimeoutMillis(long millis) { this.connectionTimeoutMillis = millis; }
+    
+    public long getIdleTimeoutMillis() { return idleTimeoutMillis; }
+    public void setIdleTimeoutMillis(long millis) { this.idleTimeoutMillis = millis; }
+    
+    public long getMaxLifetimeMillis() { return maxLifetimeMillis; }
+    public void setMaxLifetimeMillis(long millis) { this.maxLifetimeMillis = millis; }
+    
+    public long getValidationIntervalMillis() { return validationIntervalMillis; }
+    public void setValidationIntervalMillis(long millis) { this.validationIntervalMillis = millis; }
+    
+    public int getValidationTimeoutSeconds() { return validationTimeoutSeconds; }
+    public void setValidationTimeoutSeconds(int seconds) { this.validationTimeoutSeconds = seconds; }
+    
+    public long getHousekeepingIntervalMillis() { return housekeepingIntervalMillis; }
+    public void setHousekeepingIntervalMillis(long millis) { this.housekeepingIntervalMillis = millis; }
+}
+
+/**
+ * Point-in-time view of connection pool usage
+ */
+class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int waiting;
+    private final long acquisitions;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long timeouts;
+    private final long created;
+    private final long destroyed;
+    
+    public PoolStats(int active, int idle, int waiting, long acquisitions, long totalWaitMillis,
+                     long maxWaitMillis, long timeouts, long created, long destroyed) {
+        this.active = active;
+        this.idle = idle;
+        this.waiting = waiting;
+        this.acquisitions = acquisitions;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.timeouts = timeouts;
+        this.created = created;
+        this.destroyed = destroyed;
+    }
+    
+    public int getActive() { return active; }
+    public int getIdle() { return idle; }
+    public int getTotal() { return active + idle; }
+    public int getWaiting() { return waiting; }
+    public long getAcquisitions() { return acquisitions; }
+    public long getTotalWaitMillis() { return totalWaitMillis; }
+    public long getMaxWaitMillis() { return maxWaitMillis; }
+    public long getTimeouts() { return timeouts; }
+    public long getCreated() { return created; }
+    public long getDestroyed() { return destroyed; }
+    
+    public double getAverageWaitMillis() {
+        return acquisitions == 0 ? 0.0 : (double) totalWaitMillis / acquisitions;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("PoolStats[active=%d, idle=%d, waiting=%d, acquisitions=%d, " +
+                             "avgWait=%.2fms, maxWait=%dms, timeouts=%d, created=%d, destroyed=%d]",
+                             active, idle, waiting, acquisitions, getAverageWaitMillis(),
+                             maxWaitMillis, timeouts, created, destroyed);
+    }
+}
+
+/**
+ * Bounded JDBC connection pool
+ * 
+ * Connections are handed out as proxies whose close() returns the physical
+ * connection to the pool. Idle connections are validated before reuse,
+ * evicted after the idle timeout and retired once they reach their maximum
+ * lifetime, so the TCP and authentication handshake is only paid when the
+ * pool has to grow or replace a connection.
+ */
+class ConnectionPool implements AutoCloseable {
+    private final PoolConfig config;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService housekeeper;
+    
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong destroyed = new AtomicLong();
+    
+    private volatile boolean closed;
+    
+    public ConnectionPool(PoolConfig config) {
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxPoolSize(), true);
+        
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
             e.printStackTrace();
-            return false;
         }
+        
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fiscalforge-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = config.getHousekeepingIntervalMillis();
+        housekeeper.scheduleWithFixedDelay(this::housekeep, interval, interval, TimeUnit.MILLISECONDS);
     }
     
     /**
-     * Authenticate user login
+     * Borrow a connection, waiting up to the configured connection timeout
      * 
-     * @param username User's username
-     * @param password User's password
-     * @return User object if authentication successful, null otherwise
+     * @return Pooled connection; closing it returns it to the pool
+     * @throws SQLException if the pool is closed, exhausted or the database is unreachable
      */
-    public User authenticateUser(String username, String password) {
-        String passwordHash = hashPassword(password);
-        if (passwordHash == null) return null;
-        
-        String sql = "SELECT id, username, email FROM users WHERE username = ? AND password_hash = ?";
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, username);
-            pstmt.setString(2, passwordHash);
-            
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return new User(
-                    rs.getInt("id"),
-                    rs.getString("username"),
-                    rs.getString("email")
-                );
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.getConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + config.getConnectionTimeoutMillis() +
+                                              "ms waiting for a database connection");
             }
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
         }
+        recordWait(System.nanoTime() - start);
         
-        return null;
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            active.incrementAndGet();
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
     }
     
     /**
-     * Add new transaction
-     * 
-     * @param transaction Transaction object to add
-     * @return true if successful, false otherwise
+     * @return Configured maximum number of connections
      */
-    public boolean addTransaction(Transaction transaction) {
-        String sql = "INSERT INTO transactions (user_id, date, type, category, description, amount) " +
-                     "VALUES (?, ?, ?, ?, ?, ?)";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, transaction.getUserId());
-            pstmt.setDate(2, Date.valueOf(transaction.getDate()));
-            pstmt.setString(3, transaction.getType());
-            pstmt.setString(4, transaction.getCategory());
-            pstmt.setString(5, transaction.getDescription());
-            pstmt.setDouble(6, transaction.getAmount());
-            
-            pstmt.executeUpdate();
-            return true;
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
-        }
+    public int getMaxPoolSize() {
+        return config.getMaxPoolSize();
     }
     
     /**
-     * Get all transactions for a user
+     * Get current pool statistics
      * 
-     * @param userId User's ID
-     * @return List of transactions
+     * @return Snapshot of pool usage counters
      */
-    public List<Transaction> getAllTransactions(int userId) {
-        List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE user_id = ? ORDER BY date DESC";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(new Transaction(
-                    rs.getInt("id"),
-                    rs.getInt("user_id"),
-                    rs.getDate("date").toLocalDate(),
-                    rs.getString("type"),
-                    rs.getString("category"),
-                    rs.getString("description"),
-                    rs.getDouble("amount")
-                ));
-            }
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
+    public PoolStats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
         }
-        
-        return transactions;
+        return new PoolStats(
+            active.get(),
+            idleCount,
+            permits.getQueueLength(),
+            acquisitions.get(),
+            TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()),
+            TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+            timeouts.get(),
+            created.get(),
+            destroyed.get()
+        );
     }
     
     /**
-     * Get recent transactions for a user
+     * Close all idle connections and stop housekeeping
      * 
-     * @param userId User's ID
-     * @param limit Maximum number of transactions to return
-     * @return List of recent transactions
+     * Connections still on loan are closed as they are returned.
      */
-    public List<Transaction> getRecentTransactions(int userId, int limit) {
-        List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE user_id = ? ORDER BY date DESC, created_at DESC LIMIT ?";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            pstmt.setInt(2, limit);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                transactions.add(new Transaction(
-                    rs.getInt("id"),
-                    rs.getInt("user_id"),
-                    rs.getDate("date").toLocalDate(),
-                    rs.getString("type"),
-                    rs.getString("category"),
-                    rs.getString("description"),
-                    rs.getDouble("amount")
-                ));
-            }
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        List<PooledConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
         }
-        
-        return transactions;
+        toClose.forEach(this::destroy);
+    }
+    
+    private void recordWait(long waitNanos) {
+        acquisitions.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
     }
     
     /**
-     * Get total income for a user
-     * 
-     * @param userId User's ID
-     * @return Total income amount
+     * Take the most recently used idle connection that is still usable
      */
-    public double getTotalIncome(int userId) {
-        String sql = "SELECT SUM(amount) as total FROM transactions WHERE user_id = ? AND type = 'Income'";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getDouble("total");
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
             }
-            
-        } catch (SQLException e) {
-            e.printStackTrace();
+            if (pooled == null) {
+                return null;
+            }
+            if (isRetired(pooled, System.currentTimeMillis()) || !isValid(pooled)) {
+                destroy(pooled);
+                continue;
+            }
+            return pooled;
         }
-        
-        return 0.0;
+    }
+    
+    private PooledConnection openConnection() throws SQLException {
+        Connection raw = DriverManager.getConnection(config.getUrl(), config.getUser(), config.getPassword());
+        created.incrementAndGet();
+        return new PooledConnection(raw);
     }
     
     /**
-     * Get total expenses for a user
-     * 
-     * @param userId User's ID
-     * @return Total expenses amount
+     * Validate a connection unless it was used very recently
      */
-    public double getTotalExpenses(int userId) {
-        String sql = "SELECT SUM(amount) as total FROM transactions WHERE user_id = ? AND type = 'Expense'";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            if (rs.next()) {
-                return rs.getDouble("total");
-            }
-            
+    private boolean isValid(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < config.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return pooled.raw.isValid(config.getValidationTimeoutSeconds());
         } catch (SQLException e) {
-            e.printStackTrace();
+            return false;
         }
-        
-        return 0.0;
+    }
+    
+    private boolean isRetired(PooledConnection pooled, long now) {
+        return now - pooled.createdAt >= config.getMaxLifetimeMillis();
     }
     
     /**
-     * Get expenses grouped by category
-     * 
-     * @param userId User's ID
-     * @return Map of category to total amount
+     * Return a leased connection to the pool, resetting any session state
+     * the borrower left behind
      */
-    public Map<String, Double> getExpensesByCategory(int userId) {
-        Map<String, Double> categoryExpenses = new LinkedHashMap<>();
-        String sql = "SELECT category, SUM(amount) as total FROM transactions " +
-                     "WHERE user_id = ? AND type = 'Expense' GROUP BY category ORDER BY total DESC";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                categoryExpenses.put(rs.getString("category"), rs.getDouble("total"));
+    private void release(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.raw.isClosed() || isRetired(pooled, System.currentTimeMillis())) {
+                destroy(pooled);
+                return;
+            }
+            if (!pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+            pooled.lastUsedAt = System.currentTimeMillis();
+            synchronized (idle) {
+                idle.addFirst(pooled);
             }
-            
         } catch (SQLException e) {
-            e.printStackTrace();
+            destroy(pooled);
+        } finally {
+            permits.release();
         }
-        
-        return categoryExpenses;
     }
     
-    /**
-     * Get monthly expenses for trend analysis
-     * 
-     * @param userId User's ID
-     * @return Map of month to total expenses
-     */
-    public Map<String, Double> getMonthlyExpenses(int userId) {
-        Map<String, Double> monthlyExpenses = new LinkedHashMap<>();
-        String sql = "SELECT DATE_FORMAT(date, '%Y-%m') as month, SUM(amount) as total " +
-                     "FROM transactions WHERE user_id = ? AND type = 'Expense' " +
-                     "GROUP BY DATE_FORMAT(date, '%Y-%m') ORDER BY month DESC LIMIT 12";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            
-            while (rs.next()) {
-                monthlyExpenses.put(rs.getString("month"), rs.getDouble("total"));
-            }
-            
+    private void destroy(PooledConnection pooled) {
+        destroyed.incrementAndGet();
+        try {
+            pooled.raw.close();
         } catch (SQLException e) {
-            e.printStackTrace();
+            // Connection is being discarded anyway
         }
-        
-        return monthlyExpenses;
     }
     
     /**
-     * Export transactions to CSV file
-     * 
-     * @param userId User's ID
-     * @param filePath Path to save CSV file
-     * @return true if successful, false otherwise
+     * Evict idle and retired connections, then top the pool back up to minIdle
      */
-    public boolean exportToCSV(int userId, String filePath) {
-        List<Transaction> transactions = getAllTransactions(userId);
-        
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            // Write header
-            writer.println("Date,Type,Category,Description,Amount");
-            
-            // Write transactions
-            for (Transaction t : transactions) {
-                writer.printf("%s,%s,%s,\"%s\",%.2f%n",
-                    t.getDate(),
-                    t.getType(),
-                    t.getCategory(),
-                    t.getDescription().replace("\"", "\"\""), // Escape quotes
-                    t.getAmount()
-                );
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        int idleCount;
+        
+        synchronized (idle) {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                boolean idleTooLong = now - pooled.lastUsedAt >= config.getIdleTimeoutMillis()
+                                      && idle.size() > config.getMinIdle();
+                if (idleTooLong || isRetired(pooled, now)) {
+                    it.remove();
+                    evicted.add(pooled);
+                }
+            }
+            idleCount = idle.size();
+        }
+        evicted.forEach(this::destroy);
+        
+        int missing = Math.min(config.getMinIdle() - idleCount,
+                               config.getMaxPoolSize() - active.get() - idleCount);
+        for (int i = 0; i < missing && !closed; i++) {
+            try {
+                PooledConnection pooled = openConnection();
+                synchronized (idle) {
+                    idle.addLast(pooled);
+                }
+            } catch (SQLException e) {
+                System.err.println("Connection pool could not refill idle connections: " + e.getMessage());
+                break;
             }
-            
-            return true;
-            
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
         }
     }
     
     /**
-     * Export transactions to Excel file
-     * Note: This is a simplified version. In production, use Apache POI library
-     * 
-     * @param userId User's ID
-     * @param filePath Path to save Excel file
-     * @return true if successful, false otherwise
+     * Physical connection plus the bookkeeping the pool needs
      */
-    public boolean exportToExcel(int userId, String filePath) {
-        // For demonstration, we'll export as CSV with .xlsx extension
-        // In a real implementation, use Apache POI to create proper Excel files
-        return exportToCSV(userId, filePath);
+    private final class PooledConnection {
+        private final Connection raw;
+        private final long createdAt;
+        private volatile long lastUsedAt;
+        
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+        }
+        
+        /**
+         * Wrap the physical connection in a proxy whose close() hands it back
+         */
+        Connection lease() {
+            AtomicBoolean returned = new AtomicBoolean();
+            InvocationHandler handler = (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "close":
+                        if (returned.compareAndSet(false, true)) {
+                            release(this);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned.get() || raw.isClosed();
+                    case "unwrap":
+                    case "isWrapperFor":
+                        break;
+                    default:
+                        if (returned.get()) {
+                            throw new SQLException("Connection has already been returned to the pool");
+                        }
+                }
+                try {
+                    return method.invoke(raw, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            };
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+        }
     }
 }
 
@@ -499,7 +8155,8 @@ class DatabaseManager {
  * 
  * 1. Setup MySQL Database:
  *    - Install MySQL Server
- *    - Update DB_URL, DB_USER, DB_PASSWORD in the code
+ *    - Set the URL, user and password in PoolConfig (or pass a configured
+ *      PoolConfig to DatabaseManager)
  *    - Database and tables will be created automatically on first run
  * 
  * 2. Required Dependencies (add to pom.xml if using Maven):
@@ -603,6 +8260,8 @@ class DatabaseManager {
 package com.fiscalforge;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -614,14 +8273,41 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.scene.Cursor;
 
 import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
 import java.util.*;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 // ═══════════════════════════════════════════════════════════════════════════
 // MAIN APPLICATION CLASS
@@ -635,24 +8321,48 @@ import java.security.NoSuchAlgorithmException;
  */
 public class FiscalForgeApp extends Application {
     
-    // Database connection details
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/fiscalforge";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "";
-    
     // Current logged-in user
     private User currentUser;
     
+    // In-memory totals, budget tracking and report cache for the logged-in user
+    private AggregationEngine aggregationEngine;
+    private BudgetEngine budgetEngine;
+    private ReportsEngine reportsEngine;
+    private String lastImportAccount = "";
+    
     // Primary stage reference
     private Stage primaryStage;
     
     // Database manager
     private DatabaseManager dbManager;
+    private AsyncDatabaseManager asyncDb;
+    private ParallelExporter exporter;
+    
+    // Background work for the current view; cancelled on navigation
+    private ExecutorService backgroundExecutor;
+    private final List<Task<?>> viewTasks = new ArrayList<>();
+    
+    // Transactions view paging state
+    private static final int TRANSACTIONS_PAGE_SIZE = 100;
+    private PageCursor transactionsCursor;
+    
+    // Reports with more periods than this are shown as a table only
+    private static final int MAX_CHARTED_REPORT_BUCKETS = 60;
     
     /**
      * Application entry point
+     * 
+     * Run with --rebuild-rollups to recompute the monthly rollups from the
+     * transactions table and exit without starting the UI.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && "--rebuild-rollups".equals(args[0])) {
+            DatabaseManager db = new DatabaseManager();
+            boolean rebuilt = db.initializeDatabase() && db.rebuildAllMonthlyRollups();
+            db.close();
+            System.out.println(rebuilt ? "Monthly rollups rebuilt" : "Monthly rollup rebuild failed");
+            System.exit(rebuilt ? 0 : 1);
+        }
         launch(args);
     }
     
@@ -665,6 +8375,13 @@ public class FiscalForgeApp extends Application {
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         this.dbManager = new DatabaseManager();
+        this.asyncDb = new AsyncDatabaseManager(dbManager);
+        this.exporter = new ParallelExporter(dbManager);
+        this.backgroundExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "fiscalforge-ui-task");
+            t.setDaemon(true);
+            return t;
+        });
         
         primaryStage.setTitle("FiscalForge - Personal Finance Tracker");
         primaryStage.setWidth(1200);
@@ -681,6 +8398,26 @@ public class FiscalForgeApp extends Application {
         }
     }
     
+    /**
+     * JavaFX stop method - releases pooled database connections
+     */
+    @Override
+    public void stop() {
+        closeUserEngines();
+        if (backgroundExecutor != null) {
+            backgroundExecutor.shutdownNow();
+        }
+        if (asyncDb != null) {
+            asyncDb.close();
+        }
+        if (exporter != null) {
+            exporter.close();
+        }
+        if (dbManager != null) {
+            dbManager.close();
+        }
+    }
+    
     /**
      * Display login screen for user authentication
      * 
@@ -688,6 +8425,8 @@ public class FiscalForgeApp extends Application {
      * login or register a new account
      */
     private void showLoginScreen() {
+        cancelViewTasks();
+        
         // Create login layout
         VBox loginBox = new VBox(20);
         loginBox.setAlignment(Pos.CENTER);
@@ -764,13 +8503,30 @@ public class FiscalForgeApp extends Application {
             return;
         }
         
-        User user = dbManager.authenticateUser(username, password);
-        if (user != null) {
-            currentUser = user;
-            showDashboard();
-        } else {
-            showAlert(Alert.AlertType.ERROR, "Login Failed", "Invalid username or password.");
-        }
+        Scene loginScene = primaryStage.getScene();
+        loginScene.setCursor(Cursor.WAIT);
+        
+        Task<User> task = runForView(() -> dbManager.authenticateUser(username, password), user -> {
+            if (user != null) {
+                currentUser = user;
+                aggregationEngine = new AggregationEngine(dbManager, user.getId());
+                budgetEngine = createBudgetEngine(user.getId());
+                reportsEngine = new ReportsEngine(dbManager);
+                // Budget alerts must fire whether or not the Budget view is
+                // opened; if the load fails the Budget view retries it
+                BudgetEngine engine = budgetEngine;
+                backgroundExecutor.execute(() -> engine.start());
+                showDashboard();
+            } else {
+                showAlert(Alert.AlertType.ERROR, "Login Failed", "Invalid username or password.");
+            }
+        }, "Could not reach the database to sign in.");
+        
+        task.runningProperty().addListener((obs, wasRunning, running) -> {
+            if (!running) {
+                loginScene.setCursor(Cursor.DEFAULT);
+            }
+        });
     }
     
     /**
@@ -833,14 +8589,16 @@ public class FiscalForgeApp extends Application {
                 return;
             }
             
-            // Register user
-            if (dbManager.registerUser(username, password, email)) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", 
-                         "Account created successfully! You can now login.");
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Registration Failed", 
-                         "Username already exists or registration error.");
-            }
+            // Register user
+            runInBackground(() -> dbManager.registerUser(username, password, email), registered -> {
+                if (registered) {
+                    showAlert(Alert.AlertType.INFORMATION, "Success", 
+                             "Account created successfully! You can now login.");
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Registration Failed", 
+                             "Username already exists or registration error.");
+                }
+            }, "Could not reach the database to register.");
         }
     }
     
@@ -850,6 +8608,8 @@ public class FiscalForgeApp extends Application {
      * Shows summary cards, charts, and recent transactions
      */
     private void showDashboard() {
+        cancelViewTasks();
+        
         BorderPane mainLayout = new BorderPane();
         mainLayout.setStyle("-fx-background-color: #f5f5f5;");
         
@@ -869,25 +8629,40 @@ public class FiscalForgeApp extends Application {
         Label welcomeLabel = new Label("Welcome back, " + currentUser.getUsername() + "!");
         welcomeLabel.setStyle("-fx-font-size: 24px; -fx-font-weight: bold;");
         
-        // Summary cards
-        HBox summaryCards = createSummaryCards();
-        
-        // Charts
-        HBox charts = new HBox(20);
-        charts.getChildren().addAll(
-            createExpenseByCategoryChart(),
-            createMonthlyTrendChart()
-        );
-        
-        // Recent transactions
-        VBox recentTransactions = createRecentTransactionsView();
+        // Placeholder while the dashboard queries run
+        ProgressIndicator loading = new ProgressIndicator();
+        dashboardContent.getChildren().addAll(welcomeLabel, loading);
         
-        dashboardContent.getChildren().addAll(
-            welcomeLabel,
-            summaryCards,
-            charts,
-            recentTransactions
-        );
+        // Totals come from the in-memory engine (loaded on first use);
+        // only the recent transactions are read from the database
+        int userId = currentUser.getId();
+        AggregationEngine engine = aggregationEngine;
+        runForView(() -> {
+            if (engine.start()) {
+                return engine.snapshot(dbManager.getRecentTransactions(userId, 10));
+            }
+            return dbManager.getDashboardSnapshot(userId, 10);
+        }, snapshot -> {
+            // Summary cards
+            HBox summaryCards = createSummaryCards(snapshot);
+            
+            // Charts
+            HBox charts = new HBox(20);
+            charts.getChildren().addAll(
+                createExpenseByCategoryChart(snapshot),
+                createMonthlyTrendChart(snapshot)
+            );
+            
+            // Recent transactions
+            VBox recentTransactions = createRecentTransactionsView(snapshot);
+            
+            dashboardContent.getChildren().setAll(
+                welcomeLabel,
+                summaryCards,
+                charts,
+                recentTransactions
+            );
+        }, "Failed to load dashboard.");
         
         scrollPane.setContent(dashboardContent);
         mainLayout.setCenter(scrollPane);
@@ -927,6 +8702,7 @@ public class FiscalForgeApp extends Application {
         budgetBtn.setOnAction(e -> showBudgetView());
         reportsBtn.setOnAction(e -> showReportsView());
         logoutBtn.setOnAction(e -> {
+            closeUserEngines();
             currentUser = null;
             showLoginScreen();
         });
@@ -950,21 +8726,22 @@ public class FiscalForgeApp extends Application {
     /**
      * Create summary cards showing financial overview
      * 
+     * @param snapshot Dashboard data
      * @return HBox containing summary cards
      */
-    private HBox createSummaryCards() {
+    private HBox createSummaryCards(DashboardSnapshot snapshot) {
         HBox cards = new HBox(20);
         
-        // Calculate totals
-        double income = dbManager.getTotalIncome(currentUser.getId());
-        double expenses = dbManager.getTotalExpenses(currentUser.getId());
-        double balance = income - expenses;
+        // Totals
+        Money income = new Money(snapshot.getTotalIncome(), Money.DEFAULT_CURRENCY);
+        Money expenses = new Money(snapshot.getTotalExpenses(), Money.DEFAULT_CURRENCY);
+        Money balance = new Money(snapshot.getBalance(), Money.DEFAULT_CURRENCY);
         
         // Create cards
-        VBox incomeCard = createSummaryCard("Total Income", String.format("£%.2f", income), "#27ae60");
-        VBox expenseCard = createSummaryCard("Total Expenses", String.format("£%.2f", expenses), "#e74c3c");
-        VBox balanceCard = createSummaryCard("Balance", String.format("£%.2f", balance), 
-                                            balance >= 0 ? "#3498db" : "#e74c3c");
+        VBox incomeCard = createSummaryCard("Total Income", income.toDisplayString(), "#27ae60");
+        VBox expenseCard = createSummaryCard("Total Expenses", expenses.toDisplayString(), "#e74c3c");
+        VBox balanceCard = createSummaryCard("Balance", balance.toDisplayString(), 
+                                            balance.getMinor() >= 0 ? "#3498db" : "#e74c3c");
         
         cards.getChildren().addAll(incomeCard, expenseCard, balanceCard);
         return cards;
@@ -998,14 +8775,15 @@ public class FiscalForgeApp extends Application {
     /**
      * Create pie chart showing expenses by category
      * 
+     * @param snapshot Dashboard data
      * @return PieChart with expense breakdown
      */
-    private PieChart createExpenseByCategoryChart() {
+    private PieChart createExpenseByCategoryChart(DashboardSnapshot snapshot) {
         ObservableList<PieChart.Data> pieData = FXCollections.observableArrayList();
         
-        Map<String, Double> categoryExpenses = dbManager.getExpensesByCategory(currentUser.getId());
-        for (Map.Entry<String, Double> entry : categoryExpenses.entrySet()) {
-            pieData.add(new PieChart.Data(entry.getKey(), entry.getValue()));
+        Map<String, Long> categoryExpenses = snapshot.getExpensesByCategory();
+        for (Map.Entry<String, Long> entry : categoryExpenses.entrySet()) {
+            pieData.add(new PieChart.Data(entry.getKey(), Money.toDouble(entry.getValue())));
         }
         
         PieChart chart = new PieChart(pieData);
@@ -1019,9 +8797,10 @@ public class FiscalForgeApp extends Application {
     /**
      * Create line chart showing monthly expense trend
      * 
+     * @param snapshot Dashboard data
      * @return LineChart with monthly data
      */
-    private LineChart<String, Number> createMonthlyTrendChart() {
+    private LineChart<String, Number> createMonthlyTrendChart(DashboardSnapshot snapshot) {
         CategoryAxis xAxis = new CategoryAxis();
         xAxis.setLabel("Month");
         
@@ -1036,9 +8815,9 @@ public class FiscalForgeApp extends Application {
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("Expenses");
         
-        Map<String, Double> monthlyData = dbManager.getMonthlyExpenses(currentUser.getId());
-        for (Map.Entry<String, Double> entry : monthlyData.entrySet()) {
-            series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
+        Map<String, Long> monthlyData = snapshot.getMonthlyExpenses();
+        for (Map.Entry<String, Long> entry : monthlyData.entrySet()) {
+            series.getData().add(new XYChart.Data<>(entry.getKey(), Money.toDouble(entry.getValue())));
         }
         
         chart.getData().add(series);
@@ -1048,9 +8827,10 @@ public class FiscalForgeApp extends Application {
     /**
      * Create view showing recent transactions
      * 
+     * @param snapshot Dashboard data
      * @return VBox containing recent transactions table
      */
-    private VBox createRecentTransactionsView() {
+    private VBox createRecentTransactionsView(DashboardSnapshot snapshot) {
         VBox container = new VBox(10);
         container.setStyle("-fx-background-color: white; -fx-background-radius: 10; -fx-padding: 20;");
         
@@ -1064,23 +8844,24 @@ public class FiscalForgeApp extends Application {
         TableColumn<Transaction, LocalDate> dateCol = new TableColumn<>("Date");
         dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
         
-        TableColumn<Transaction, String> typeCol = new TableColumn<>("Type");
+        TableColumn<Transaction, TransactionType> typeCol = new TableColumn<>("Type");
         typeCol.setCellValueFactory(new PropertyValueFactory<>("type"));
         
         TableColumn<Transaction, String> categoryCol = new TableColumn<>("Category");
-        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        categoryCol.setCellValueFactory(cell ->
+            new ReadOnlyStringWrapper(dbManager.getCategoryName(cell.getValue().getCategoryId())));
         
         TableColumn<Transaction, String> descCol = new TableColumn<>("Description");
         descCol.setCellValueFactory(new PropertyValueFactory<>("description"));
         
-        TableColumn<Transaction, Double> amountCol = new TableColumn<>("Amount");
+        TableColumn<Transaction, Money> amountCol = new TableColumn<>("Amount");
         amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
         
         table.getColumns().addAll(dateCol, typeCol, categoryCol, descCol, amountCol);
         
-        // Load recent transactions
+        // Recent transactions
         ObservableList<Transaction> transactions = FXCollections.observableArrayList(
-            dbManager.getRecentTransactions(currentUser.getId(), 10)
+            snapshot.getRecentTransactions()
         );
         table.setItems(transactions);
         
@@ -1094,6 +8875,8 @@ public class FiscalForgeApp extends Application {
      * Allows adding, editing, and deleting transactions
      */
     private void showTransactionsView() {
+        cancelViewTasks();
+        
         BorderPane layout = new BorderPane();
         layout.setStyle("-fx-background-color: #f5f5f5;");
         layout.setTop(createNavBar());
@@ -1114,25 +8897,36 @@ public class FiscalForgeApp extends Application {
                           "-fx-font-size: 14px; -fx-padding: 10 20; -fx-background-radius: 5;");
         addButton.setOnAction(e -> showAddTransactionDialog());
         
+        Button importButton = new Button("Import");
+        importButton.setStyle("-fx-font-size: 14px; -fx-padding: 10 20; -fx-background-radius: 5;");
+        importButton.setOnAction(e -> importTransactions(importButton));
+        
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
         
-        header.getChildren().addAll(titleLabel, spacer, addButton);
+        header.getChildren().addAll(titleLabel, spacer, importButton, addButton);
         
         // Transactions table
         TableView<Transaction> table = createTransactionsTable();
         
+        Button loadMoreButton = new Button("Load More");
+        loadMoreButton.setOnAction(e -> loadNextTransactionsPage(table, loadMoreButton));
+        
+        // Load the first page; further pages are fetched on demand
+        transactionsCursor = null;
+        loadNextTransactionsPage(table, loadMoreButton);
+        
         // Export buttons
         HBox exportButtons = new HBox(10);
         Button exportCSV = new Button("Export to CSV");
         Button exportExcel = new Button("Export to Excel");
         
-        exportCSV.setOnAction(e -> exportToCSV());
-        exportExcel.setOnAction(e -> exportToExcel());
+        exportCSV.setOnAction(e -> exportToCSV(exportCSV));
+        exportExcel.setOnAction(e -> exportToExcel(exportExcel));
         
         exportButtons.getChildren().addAll(exportCSV, exportExcel);
         
-        content.getChildren().addAll(header, table, exportButtons);
+        content.getChildren().addAll(header, table, loadMoreButton, exportButtons);
         layout.setCenter(content);
         
         Scene scene = new Scene(layout);
@@ -1142,7 +8936,9 @@ public class FiscalForgeApp extends Application {
     /**
      * Create detailed transactions table
      * 
-     * @return TableView with all transactions
+     * Rows are loaded separately by loadNextTransactionsPage.
+     * 
+     * @return Empty TableView with transaction columns
      */
     private TableView<Transaction> createTransactionsTable() {
         TableView<Transaction> table = new TableView<>();
@@ -1154,19 +8950,20 @@ public class FiscalForgeApp extends Application {
         dateCol.setCellValueFactory(new PropertyValueFactory<>("date"));
         dateCol.setPrefWidth(120);
         
-        TableColumn<Transaction, String> typeCol = new TableColumn<>("Type");
+        TableColumn<Transaction, TransactionType> typeCol = new TableColumn<>("Type");
         typeCol.setCellValueFactory(new PropertyValueFactory<>("type"));
         typeCol.setPrefWidth(100);
         
         TableColumn<Transaction, String> categoryCol = new TableColumn<>("Category");
-        categoryCol.setCellValueFactory(new PropertyValueFactory<>("category"));
+        categoryCol.setCellValueFactory(cell ->
+            new ReadOnlyStringWrapper(dbManager.getCategoryName(cell.getValue().getCategoryId())));
         categoryCol.setPrefWidth(150);
         
         TableColumn<Transaction, String> descCol = new TableColumn<>("Description");
         descCol.setCellValueFactory(new PropertyValueFactory<>("description"));
         descCol.setPrefWidth(300);
         
-        TableColumn<Transaction, Double> amountCol = new TableColumn<>("Amount");
+        TableColumn<Transaction, Money> amountCol = new TableColumn<>("Amount");
         amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
         amountCol.setPrefWidth(120);
         
@@ -1176,15 +8973,30 @@ public class FiscalForgeApp extends Application {
         
         table.getColumns().addAll(dateCol, typeCol, categoryCol, descCol, amountCol, actionsCol);
         
-        // Load all transactions
-        ObservableList<Transaction> transactions = FXCollections.observableArrayList(
-            dbManager.getAllTransactions(currentUser.getId())
-        );
-        table.setItems(transactions);
+        table.setPlaceholder(new ProgressIndicator());
         
         return table;
     }
     
+    /**
+     * Fetch the next page of transactions in the background and append it
+     * 
+     * @param table Transactions table to extend
+     * @param loadMoreButton Disabled while loading and once no pages remain
+     */
+    private void loadNextTransactionsPage(TableView<Transaction> table, Button loadMoreButton) {
+        int userId = currentUser.getId();
+        PageCursor after = transactionsCursor;
+        loadMoreButton.setDisable(true);
+        
+        runForView(() -> dbManager.getTransactionsPage(userId, after, TRANSACTIONS_PAGE_SIZE), page -> {
+            table.getItems().addAll(page.getTransactions());
+            table.setPlaceholder(new Label("No transactions yet"));
+            transactionsCursor = page.getNextCursor();
+            loadMoreButton.setDisable(!page.hasMore());
+        }, "Failed to load transactions.");
+    }
+    
     /**
      * Show dialog to add new transaction
      */
@@ -1198,16 +9010,15 @@ public class FiscalForgeApp extends Application {
         grid.setVgap(10);
         grid.setPadding(new Insets(20));
         
-        ComboBox<String> typeBox = new ComboBox<>();
-        typeBox.getItems().addAll("Income", "Expense");
-        typeBox.setValue("Expense");
+        ComboBox<TransactionType> typeBox = new ComboBox<>();
+        typeBox.getItems().addAll(TransactionType.values());
+        typeBox.setValue(TransactionType.EXPENSE);
         
         TextField amountField = new TextField();
         amountField.setPromptText("0.00");
         
         ComboBox<String> categoryBox = new ComboBox<>();
-        categoryBox.getItems().addAll("Food", "Transport", "Entertainment", 
-                                      "Bills", "Shopping", "Salary", "Other");
+        categoryBox.getItems().addAll(dbManager.getCategories().names());
         
         TextField descriptionField = new TextField();
         descriptionField.setPromptText("Description");
@@ -1231,13 +9042,13 @@ public class FiscalForgeApp extends Application {
         dialog.setResultConverter(buttonType -> {
             if (buttonType == ButtonType.OK) {
                 try {
-                    double amount = Double.parseDouble(amountField.getText());
+                    long amount = Money.parseMinor(amountField.getText());
                     return new Transaction(
                         0, // ID will be assigned by database
                         currentUser.getId(),
                         datePicker.getValue(),
                         typeBox.getValue(),
-                        categoryBox.getValue(),
+                        dbManager.getCategories().idOf(categoryBox.getValue()),
                         descriptionField.getText(),
                         amount
                     );
@@ -1249,56 +9060,379 @@ public class FiscalForgeApp extends Application {
         });
         
         Optional<Transaction> result = dialog.showAndWait();
-        result.ifPresent(transaction -> {
-            if (dbManager.addTransaction(transaction)) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Transaction added successfully!");
-                showTransactionsView(); // Refresh view
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Error", "Failed to add transaction.");
-            }
-        });
+        Scene origin = primaryStage.getScene();
+        result.ifPresent(transaction ->
+            runInBackground(() -> dbManager.addTransaction(transaction), added -> {
+                if (added) {
+                    showAlert(Alert.AlertType.INFORMATION, "Success", "Transaction added successfully!");
+                    // Refresh the list if the user is still looking at it
+                    if (primaryStage.getScene() == origin) {
+                        showTransactionsView();
+                    }
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Error", "Failed to add transaction.");
+                }
+            }, "Failed to add transaction.")
+        );
     }
     
     /**
      * Show budget management view
      */
     private void showBudgetView() {
-        // Implementation similar to other views
-        showAlert(Alert.AlertType.INFORMATION, "Coming Soon", "Budget management feature coming soon!");
+        cancelViewTasks();
+        
+        BorderPane layout = new BorderPane();
+        layout.setStyle("-fx-background-color: #f5f5f5;");
+        layout.setTop(createNavBar());
+        
+        VBox content = new VBox(20);
+        content.setPadding(new Insets(20));
+        
+        // Header with add button
+        HBox header = new HBox();
+        header.setAlignment(Pos.CENTER_LEFT);
+        header.setSpacing(20);
+        
+        Label titleLabel = new Label("Budgets");
+        titleLabel.setStyle("-fx-font-size: 24px; -fx-font-weight: bold;");
+        
+        Button addButton = new Button("+ Add Budget");
+        addButton.setStyle("-fx-background-color: #667eea; -fx-text-fill: white; " +
+                          "-fx-font-size: 14px; -fx-padding: 10 20; -fx-background-radius: 5;");
+        addButton.setOnAction(e -> showAddBudgetDialog());
+        
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        
+        header.getChildren().addAll(titleLabel, spacer, addButton);
+        
+        // Placeholder while the engine loads
+        VBox budgetList = new VBox(15);
+        budgetList.getChildren().add(new ProgressIndicator());
+        
+        // Progress comes from the engine's in-memory spend; nothing is
+        // recomputed per budget when the view is rendered
+        BudgetEngine engine = budgetEngine;
+        runForView(() -> engine.start() ? engine.statuses() : null, statuses -> {
+            if (statuses == null) {
+                budgetList.getChildren().setAll(new Label("Budgets could not be loaded."));
+            } else if (statuses.isEmpty()) {
+                budgetList.getChildren().setAll(
+                    new Label("No active budgets. Add one to start tracking your spending."));
+            } else {
+                budgetList.getChildren().clear();
+                for (BudgetStatus status : statuses) {
+                    budgetList.getChildren().add(createBudgetCard(status));
+                }
+            }
+        }, "Failed to load budgets.");
+        
+        content.getChildren().addAll(header, budgetList);
+        
+        ScrollPane scrollPane = new ScrollPane(content);
+        scrollPane.setFitToWidth(true);
+        layout.setCenter(scrollPane);
+        
+        Scene scene = new Scene(layout);
+        primaryStage.setScene(scene);
+    }
+    
+    /**
+     * Create a card showing one budget's progress in its current window
+     * 
+     * @param status Budget status from the budget engine
+     * @return VBox containing the budget card
+     */
+    private VBox createBudgetCard(BudgetStatus status) {
+        Budget budget = status.getBudget();
+        
+        VBox card = new VBox(8);
+        card.setPadding(new Insets(15));
+        card.setStyle("-fx-background-color: white; -fx-background-radius: 10; " +
+                     "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.1), 10, 0, 0, 2);");
+        
+        Label nameLabel = new Label(describeBudget(status));
+        nameLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
+        
+        Label windowLabel = new Label(status.getWindowStart() + " to " + status.getWindowEnd());
+        windowLabel.setStyle("-fx-text-fill: #7f8c8d;");
+        
+        ProgressBar progress = new ProgressBar(Math.min(status.getProgress(), 1.0));
+        progress.setMaxWidth(Double.MAX_VALUE);
+        String color = status.isOverspent() ? "#e74c3c"
+                     : status.getProgress() >= BudgetEngine.DEFAULT_WARNING_RATIO ? "#f39c12" : "#27ae60";
+        progress.setStyle("-fx-accent: " + color + ";");
+        
+        Money spent = new Money(status.getSpentMinor(), Money.DEFAULT_CURRENCY);
+        Money limit = new Money(budget.getAmountMinor(), Money.DEFAULT_CURRENCY);
+        Label amountLabel = new Label(spent.toDisplayString() + " of " + limit.toDisplayString() + " spent");
+        if (status.isOverspent()) {
+            amountLabel.setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
+        }
+        
+        card.getChildren().addAll(nameLabel, windowLabel, progress, amountLabel);
+        return card;
+    }
+    
+    /**
+     * Show dialog to add a new budget
+     */
+    private void showAddBudgetDialog() {
+        Dialog<Budget> dialog = new Dialog<>();
+        dialog.setTitle("Add Budget");
+        dialog.setHeaderText("Enter budget details");
+        
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.setPadding(new Insets(20));
+        
+        ComboBox<String> categoryBox = new ComboBox<>();
+        categoryBox.getItems().addAll(dbManager.getCategories().names());
+        
+        TextField amountField = new TextField();
+        amountField.setPromptText("0.00");
+        
+        ComboBox<BudgetPeriod> periodBox = new ComboBox<>();
+        periodBox.getItems().addAll(BudgetPeriod.values());
+        periodBox.setValue(BudgetPeriod.MONTHLY);
+        
+        DatePicker startPicker = new DatePicker(LocalDate.now().withDayOfMonth(1));
+        DatePicker endPicker = new DatePicker(LocalDate.now().plusYears(1));
+        
+        grid.add(new Label("Category:"), 0, 0);
+        grid.add(categoryBox, 1, 0);
+        grid.add(new Label("Amount:"), 0, 1);
+        grid.add(amountField, 1, 1);
+        grid.add(new Label("Period:"), 0, 2);
+        grid.add(periodBox, 1, 2);
+        grid.add(new Label("Start Date:"), 0, 3);
+        grid.add(startPicker, 1, 3);
+        grid.add(new Label("End Date:"), 0, 4);
+        grid.add(endPicker, 1, 4);
+        
+        dialog.getDialogPane().setContent(grid);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        
+        dialog.setResultConverter(buttonType -> {
+            if (buttonType == ButtonType.OK) {
+                int categoryId = dbManager.getCategories().idOf(categoryBox.getValue());
+                LocalDate start = startPicker.getValue();
+                LocalDate end = endPicker.getValue();
+                if (categoryId == CategoryDictionary.NO_ID || start == null || end == null || end.isBefore(start)) {
+                    showAlert(Alert.AlertType.ERROR, "Invalid Input",
+                              "Please choose a category and a valid date range.");
+                    return null;
+                }
+                try {
+                    long amount = Money.parseMinor(amountField.getText());
+                    if (amount <= 0) {
+                        throw new NumberFormatException("Budget must be positive");
+                    }
+                    return new Budget(0, currentUser.getId(), categoryId, amount,
+                                      periodBox.getValue(), start, end);
+                } catch (NumberFormatException e) {
+                    showAlert(Alert.AlertType.ERROR, "Invalid Input", "Please enter a valid amount.");
+                }
+            }
+            return null;
+        });
+        
+        Optional<Budget> result = dialog.showAndWait();
+        BudgetEngine engine = budgetEngine;
+        Scene origin = primaryStage.getScene();
+        result.ifPresent(budget ->
+            runInBackground(() -> dbManager.addBudget(budget) && engine.start() && engine.track(budget), added -> {
+                if (added) {
+                    // Refresh the list if the user is still looking at it
+                    if (primaryStage.getScene() == origin) {
+                        showBudgetView();
+                    }
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Error", "Failed to add budget.");
+                }
+            }, "Failed to add budget.")
+        );
     }
     
     /**
      * Show reports and analytics view
      */
     private void showReportsView() {
-        // Implementation similar to other views
-        showAlert(Alert.AlertType.INFORMATION, "Coming Soon", "Reports feature coming soon!");
+        cancelViewTasks();
+        
+        BorderPane layout = new BorderPane();
+        layout.setStyle("-fx-background-color: #f5f5f5;");
+        layout.setTop(createNavBar());
+        
+        VBox content = new VBox(20);
+        content.setPadding(new Insets(20));
+        
+        Label titleLabel = new Label("Reports");
+        titleLabel.setStyle("-fx-font-size: 24px; -fx-font-weight: bold;");
+        
+        // Range and granularity controls
+        HBox controls = new HBox(10);
+        controls.setAlignment(Pos.CENTER_LEFT);
+        
+        DatePicker fromPicker = new DatePicker(LocalDate.now().minusYears(1).plusDays(1));
+        DatePicker toPicker = new DatePicker(LocalDate.now());
+        
+        ComboBox<Granularity> granularityCombo = new ComboBox<>();
+        granularityCombo.getItems().addAll(Granularity.values());
+        granularityCombo.setValue(Granularity.MONTH);
+        
+        Button runButton = new Button("Run Report");
+        runButton.setStyle("-fx-background-color: #667eea; -fx-text-fill: white; " +
+                          "-fx-font-size: 14px; -fx-padding: 10 20; -fx-background-radius: 5;");
+        
+        controls.getChildren().addAll(new Label("From:"), fromPicker, new Label("To:"), toPicker,
+                                      granularityCombo, runButton);
+        
+        VBox results = new VBox(20);
+        
+        runButton.setOnAction(e -> {
+            LocalDate from = fromPicker.getValue();
+            LocalDate to = toPicker.getValue();
+            Granularity granularity = granularityCombo.getValue();
+            if (from == null || to == null || to.isBefore(from)) {
+                showAlert(Alert.AlertType.ERROR, "Invalid Range", "Please choose a start date on or before the end date.");
+                return;
+            }
+            
+            results.getChildren().setAll(new ProgressIndicator());
+            ReportsEngine engine = reportsEngine;
+            int userId = currentUser.getId();
+            runForView(() -> engine.getReport(userId, from, to, granularity), report -> {
+                if (report == null) {
+                    results.getChildren().setAll(new Label("The report could not be built."));
+                } else {
+                    showReport(results, report);
+                }
+            }, "Failed to build report.");
+        });
+        
+        content.getChildren().addAll(titleLabel, controls, results);
+        
+        ScrollPane scrollPane = new ScrollPane(content);
+        scrollPane.setFitToWidth(true);
+        layout.setCenter(scrollPane);
+        
+        Scene scene = new Scene(layout);
+        primaryStage.setScene(scene);
+        
+        runButton.fire();
+    }
+    
+    /**
+     * Show a report's totals, chart and per-period table
+     * 
+     * The chart is left out when there are too many periods to read.
+     * 
+     * @param results Container to fill
+     * @param report Report to show
+     */
+    private void showReport(VBox results, Report report) {
+        Label summary = new Label(String.format("Income: %s    Expenses: %s    Net: %s",
+            Money.format(report.getTotalIncome()),
+            Money.format(report.getTotalExpenses()),
+            Money.format(Math.subtractExact(report.getTotalIncome(), report.getTotalExpenses()))));
+        summary.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
+        results.getChildren().setAll(summary);
+        
+        if (report.getBuckets().size() <= MAX_CHARTED_REPORT_BUCKETS) {
+            results.getChildren().add(createReportChart(report));
+        }
+        
+        TableView<ReportBucket> table = new TableView<>();
+        table.setPrefHeight(400);
+        
+        TableColumn<ReportBucket, String> periodCol = new TableColumn<>("Period");
+        periodCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getLabel()));
+        periodCol.setPrefWidth(150);
+        
+        TableColumn<ReportBucket, String> incomeCol = new TableColumn<>("Income");
+        incomeCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(Money.format(cell.getValue().getIncome())));
+        incomeCol.setPrefWidth(150);
+        
+        TableColumn<ReportBucket, String> expenseCol = new TableColumn<>("Expenses");
+        expenseCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(Money.format(cell.getValue().getExpenses())));
+        expenseCol.setPrefWidth(150);
+        
+        TableColumn<ReportBucket, String> netCol = new TableColumn<>("Net");
+        netCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(Money.format(cell.getValue().getNet())));
+        netCol.setPrefWidth(150);
+        
+        // The Collection overload avoids an unchecked generic varargs call
+        table.getColumns().addAll(List.of(periodCol, incomeCol, expenseCol, netCol));
+        table.setItems(FXCollections.observableArrayList(report.getBuckets()));
+        
+        results.getChildren().add(table);
+    }
+    
+    /**
+     * Create bar chart comparing income and expenses per report period
+     * 
+     * @param report Report to chart
+     * @return BarChart with one income and one expense bar per period
+     */
+    private BarChart<String, Number> createReportChart(Report report) {
+        CategoryAxis xAxis = new CategoryAxis();
+        xAxis.setLabel("Period");
+        
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel("Amount (£)");
+        
+        BarChart<String, Number> chart = new BarChart<>(xAxis, yAxis);
+        chart.setTitle(report.getGranularity() + " Income and Expenses");
+        chart.setPrefHeight(300);
+        chart.setStyle("-fx-background-color: white; -fx-background-radius: 10;");
+        
+        XYChart.Series<String, Number> income = new XYChart.Series<>();
+        income.setName("Income");
+        XYChart.Series<String, Number> expenses = new XYChart.Series<>();
+        expenses.setName("Expenses");
+        
+        for (ReportBucket bucket : report.getBuckets()) {
+            income.getData().add(new XYChart.Data<>(bucket.getLabel(), Money.toDouble(bucket.getIncome())));
+            expenses.getData().add(new XYChart.Data<>(bucket.getLabel(), Money.toDouble(bucket.getExpenses())));
+        }
+        
+        chart.getData().addAll(List.of(income, expenses));
+        return chart;
     }
     
     /**
      * Export transactions to CSV file
+     * 
+     * @param exportButton Button that started the export; disabled while it runs
      */
-    private void exportToCSV() {
+    private void exportToCSV(Button exportButton) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export to CSV");
-        fileChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("CSV Files", "*.csv")
+        fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+            new FileChooser.ExtensionFilter("Compressed CSV Files", "*.csv.gz")
         );
         
         File file = fileChooser.showSaveDialog(primaryStage);
         if (file != null) {
-            if (dbManager.exportToCSV(currentUser.getId(), file.getAbsolutePath())) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Transactions exported to CSV!");
-            } else {
-                showAlert(Alert.AlertType.ERROR, "Error", "Failed to export transactions.");
-            }
+            int userId = currentUser.getId();
+            String path = file.getAbsolutePath();
+            // Chunks are formatted (and compressed) in parallel
+            boolean gzip = path.toLowerCase().endsWith(".gz");
+            runExport(exportButton, () -> exporter.exportCsv(userId, path, gzip),
+                      "Transactions exported to CSV!");
         }
     }
     
     /**
      * Export transactions to Excel file
+     * 
+     * @param exportButton Button that started the export; disabled while it runs
      */
-    private void exportToExcel() {
+    private void exportToExcel(Button exportButton) {
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Export to Excel");
         fileChooser.getExtensionFilters().add(
@@ -1307,12 +9441,228 @@ public class FiscalForgeApp extends Application {
         
         File file = fileChooser.showSaveDialog(primaryStage);
         if (file != null) {
-            if (dbManager.exportToExcel(currentUser.getId(), file.getAbsolutePath())) {
-                showAlert(Alert.AlertType.INFORMATION, "Success", "Transactions exported to Excel!");
+            int userId = currentUser.getId();
+            runExport(exportButton, () -> dbManager.exportToExcel(userId, file.getAbsolutePath()),
+                      "Transactions exported to Excel!");
+        }
+    }
+    
+    /**
+     * Import transactions from a CSV, OFX/QFX or QIF bank statement
+     * 
+     * Progress is shown on the button; skipped duplicates and rejected
+     * rows are reported when the import finishes.
+     * 
+     * @param importButton Button that started the import; disabled while it runs
+     */
+    private void importTransactions(Button importButton) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Import Transactions");
+        fileChooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Statements", "*.csv", "*.ofx", "*.qfx", "*.qif"),
+            new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+            new FileChooser.ExtensionFilter("OFX Files", "*.ofx", "*.qfx"),
+            new FileChooser.ExtensionFilter("QIF Files", "*.qif")
+        );
+        
+        File file = fileChooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+        
+        // Rows only count as already imported within the same account.
+        // OFX/QFX statements name their account; CSV and QIF files do not.
+        String name = file.getName().toLowerCase();
+        String account = null;
+        if (!name.endsWith(".ofx") && !name.endsWith(".qfx")) {
+            TextInputDialog accountDialog = new TextInputDialog(lastImportAccount);
+            accountDialog.setTitle("Import Transactions");
+            accountDialog.setHeaderText("Which account or card is " + file.getName() + " a statement of?\n" +
+                                        "Use the same name each time you import this account.");
+            accountDialog.setContentText("Account:");
+            Optional<String> chosen = accountDialog.showAndWait();
+            if (!chosen.isPresent()) {
+                return;
+            }
+            account = chosen.get().trim();
+            lastImportAccount = account;
+        }
+        String importAccount = account;
+        
+        String label = importButton.getText();
+        importButton.setDisable(true);
+        importButton.setText("Importing...");
+        
+        int userId = currentUser.getId();
+        boolean statement = StatementImporter.isStatementFile(file.getName());
+        ImportProgressListener progress = (done, total, rowsImported) -> Platform.runLater(() ->
+            importButton.setText(String.format("Importing... %d%%", total == 0 ? 100 : done * 100 / total)));
+        
+        Callable<ImportResult> work = statement
+            ? () -> new StatementImporter(dbManager).importFile(userId, file.toPath(), importAccount, progress)
+            : () -> new CsvImporter(dbManager).importFile(userId, file.toPath(), importAccount, progress);
+        
+        Task<ImportResult> task = runInBackground(work, result -> {
+            StringBuilder message = new StringBuilder(String.format("Imported %d of %d rows.",
+                result.getRowsImported(), result.getRowsRead()));
+            if (result.getRowsSkipped() > 0) {
+                message.append(String.format("%n%d rows were already imported for this account and were skipped.",
+                    result.getRowsSkipped()));
+            }
+            if (result.getRowsRejected() > 0) {
+                message.append(String.format("%n%d rows were rejected:", result.getRowsRejected()));
+                for (ImportError error : result.getErrors().subList(0, Math.min(10, result.getErrors().size()))) {
+                    message.append(System.lineSeparator()).append(error);
+                }
+            }
+            showAlert(result.getRowsRejected() > 0 ? Alert.AlertType.WARNING : Alert.AlertType.INFORMATION,
+                      "Import Finished", message.toString());
+            // Refresh the list if the user is still looking at it
+            if (importButton.getScene() == primaryStage.getScene()) {
+                showTransactionsView();
+            }
+        }, "Failed to import transactions.");
+        
+        task.runningProperty().addListener((obs, wasRunning, running) -> {
+            if (!running) {
+                importButton.setDisable(false);
+                importButton.setText(label);
+            }
+        });
+    }
+    
+    /**
+     * Run an export in the background, keeping the window responsive
+     * 
+     * Exports are not tied to the current view, so navigating away does
+     * not cancel them.
+     * 
+     * @param exportButton Button to disable until the export finishes
+     * @param export Export work returning true on success
+     * @param successMessage Message shown when the export succeeds
+     */
+    private void runExport(Button exportButton, Callable<Boolean> export, String successMessage) {
+        String label = exportButton.getText();
+        exportButton.setDisable(true);
+        exportButton.setText("Exporting...");
+        
+        Task<Boolean> task = runInBackground(export, exported -> {
+            if (exported) {
+                showAlert(Alert.AlertType.INFORMATION, "Success", successMessage);
             } else {
                 showAlert(Alert.AlertType.ERROR, "Error", "Failed to export transactions.");
             }
+        }, "Failed to export transactions.");
+        
+        task.runningProperty().addListener((obs, wasRunning, running) -> {
+            if (!running) {
+                exportButton.setDisable(false);
+                exportButton.setText(label);
+            }
+        });
+    }
+    
+    /**
+     * Run blocking work on a background thread
+     * 
+     * The result is passed to onSuccess on the JavaFX Application Thread;
+     * a failure is logged and reported with an error alert.
+     * 
+     * @param work Blocking work, typically a DatabaseManager call
+     * @param onSuccess Applies the result to the UI
+     * @param failureMessage Message shown if the work throws
+     * @return The scheduled task
+     */
+    private <T> Task<T> runInBackground(Callable<T> work, Consumer<T> onSuccess, String failureMessage) {
+        Task<T> task = new Task<T>() {
+            @Override
+            protected T call() throws Exception {
+                return work.call();
+            }
+        };
+        task.setOnSucceeded(e -> onSuccess.accept(task.getValue()));
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            showAlert(Alert.AlertType.ERROR, "Error", failureMessage);
+        });
+        backgroundExecutor.execute(task);
+        return task;
+    }
+    
+    /**
+     * Run background work that belongs to the current view
+     * 
+     * The task is cancelled if the user navigates to another view before
+     * it finishes, and its result is then discarded.
+     */
+    private <T> Task<T> runForView(Callable<T> work, Consumer<T> onSuccess, String failureMessage) {
+        Task<T> task = runInBackground(work, onSuccess, failureMessage);
+        viewTasks.add(task);
+        task.runningProperty().addListener((obs, wasRunning, running) -> {
+            if (!running) {
+                viewTasks.remove(task);
+            }
+        });
+        return task;
+    }
+    
+    /**
+     * Stop the logged-in user's aggregation, budget and reports engines
+     */
+    private void closeUserEngines() {
+        if (aggregationEngine != null) {
+            aggregationEngine.close();
+            aggregationEngine = null;
+        }
+        if (budgetEngine != null) {
+            budgetEngine.close();
+            budgetEngine = null;
+        }
+        if (reportsEngine != null) {
+            reportsEngine.close();
+            reportsEngine = null;
+        }
+    }
+    
+    /**
+     * Create the budget engine for a newly logged-in user
+     * 
+     * Budget warnings are raised on the committing thread and shown as
+     * alerts on the JavaFX Application Thread.
+     */
+    private BudgetEngine createBudgetEngine(int userId) {
+        BudgetEngine engine = new BudgetEngine(dbManager, userId);
+        engine.addBudgetListener(new BudgetListener() {
+            @Override
+            public void onBudgetWarning(BudgetStatus status) {
+                String message = describeBudget(status) + " is at " +
+                                 Math.round(status.getProgress() * 100) + "% of its limit.";
+                Platform.runLater(() -> showAlert(Alert.AlertType.WARNING, "Budget Warning", message));
+            }
+            
+            @Override
+            public void onBudgetOverspent(BudgetStatus status) {
+                String message = describeBudget(status) + " is over budget by " +
+                                 new Money(-status.getRemainingMinor(), Money.DEFAULT_CURRENCY).toDisplayString() + ".";
+                Platform.runLater(() -> showAlert(Alert.AlertType.WARNING, "Budget Exceeded", message));
+            }
+        });
+        return engine;
+    }
+    
+    private String describeBudget(BudgetStatus status) {
+        Budget budget = status.getBudget();
+        return budget.getPeriod() + " " + dbManager.getCategoryName(budget.getCategoryId()) + " budget";
+    }
+    
+    /**
+     * Cancel background work started by the view being left
+     */
+    private void cancelViewTasks() {
+        for (Task<?> task : new ArrayList<>(viewTasks)) {
+            task.cancel(true);
         }
+        viewTasks.clear();
     }
     
     /**